@@ -3,6 +3,7 @@ package com.chanceman;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Range;
 
 @ConfigGroup("chanceman")
 public interface ChanceManConfig extends Config
@@ -62,4 +63,52 @@ public interface ChanceManConfig extends Config
             position = 6
     )
     default boolean enableRollSounds() { return true; }
+
+    @ConfigItem(
+            keyName = "rollWeighting",
+            name = "Roll Weighting",
+            description = "How likely each locked item is to be rolled. Equal gives every item the same chance;" +
+                    " GE Value favours valuable items and Inverse GE Value favours cheap ones.",
+            position = 7
+    )
+    default RollWeighting rollWeighting() { return RollWeighting.EQUAL; }
+
+    @Range(min = 0)
+    @ConfigItem(
+            keyName = "bulkRollThreshold",
+            name = "Bulk Roll Threshold",
+            description = "Once this many rolls are queued, they are resolved together with a single animation" +
+                    " and chat summary. 0 always rolls one at a time.",
+            position = 8
+    )
+    default int bulkRollThreshold() { return 0; }
+
+    @ConfigItem(
+            keyName = "typoTolerantSearch",
+            name = "Typo Tolerant Search",
+            description = "When a panel search of six or more letters finds nothing, show items whose names" +
+                    " are within one or two typos of it instead.",
+            position = 9
+    )
+    default boolean typoTolerantSearch() { return true; }
+
+    enum RollWeighting
+    {
+        EQUAL("Equal"),
+        GE_VALUE("GE Value"),
+        INVERSE_GE_VALUE("Inverse GE Value");
+
+        private final String name;
+
+        RollWeighting(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
 }
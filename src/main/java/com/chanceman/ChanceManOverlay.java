@@ -7,6 +7,7 @@ import net.runelite.client.game.ItemManager;
 import net.runelite.client.ui.overlay.Overlay;
 import net.runelite.client.ui.overlay.OverlayLayer;
 import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.util.AsyncBufferedImage;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
@@ -16,14 +17,23 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
  * Overlay for displaying the roll animation.
  * It renders a scrolling set of item icons and highlights the final item.
+ *
+ * The reel's position is a function of the time since the roll started, so the animation runs at the
+ * same speed at any frame rate. The whole strip of icons is chosen when the roll starts, with the
+ * final item placed where the reel stops.
+ *
+ * Rendering a frame allocates nothing: the box is drawn once into a cached image, the paint objects
+ * are constants, and the strip's icons are scaled to size as soon as they load, before they scroll into view.
+ * An icon that has not loaded by the time it scrolls into view is drawn as a plain placeholder.
  */
 @Singleton @Slf4j
 public class ChanceManOverlay extends Overlay
@@ -37,15 +47,20 @@ public class ChanceManOverlay extends Overlay
     private volatile boolean isAnimating = false;
     private long rollDuration;             // spin duration (ms)
     private long highlightDuration = 2000; // highlight duration (ms)
-    private long rollStartTime = 0;
+    private long rollStartTime = 0;        // System.nanoTime() at the start
+    private int finalItemId;
 
-    // Spin parameters
-    private float rollOffset = 0f;
-    private float currentSpeed;
+    // Spin parameters: the reel decelerates from initialSpeed to minSpeed, then keeps rolling at minSpeed
     private final float initialSpeed = 975f;   // start speed (px/sec)
     private final float deceleration = 425f;    // px/sec^2
     private final float minSpeed = 120f;        // never go below this speed
 
+    // Trajectory of the current roll, fixed when it starts
+    private int[] reel = new int[0];       // every icon that passes, left to right
+    private BufferedImage[] reelIcons = new BufferedImage[0]; // their scaled icons, null until loaded
+    private float travel;                  // total distance in px, a whole number of icons
+    private float naturalTravel;           // distance the speed curve covers in rollDuration
+
     // Icon layout
     private final int iconCount = 5;
     private final int iconWidth = 32;
@@ -68,9 +83,28 @@ public class ChanceManOverlay extends Overlay
     private final int cornerRadius = 10;
     private final float borderStrokeWidth = 2f;
 
-    // List of rolling items (synchronized for thread safety)
-    private final List<Integer> rollingItems = Collections.synchronizedList(new ArrayList<>());
-    private Supplier<Integer> randomLockedItemSupplier;
+    // Cached paint objects
+    private static final Color BACKGROUND_COLOR = new Color(0, 0, 0, 180);
+    private static final Color BORDER_COLOR = new Color(0, 0, 0, 255);
+    private static final Color PLACEHOLDER_COLOR = new Color(255, 255, 255, 40);
+    private final BasicStroke borderStroke = new BasicStroke(borderStrokeWidth);
+    private final BasicStroke highlightStroke = new BasicStroke(3f);
+    // room around the box image for the half of the border stroke that falls outside the shape
+    private final int boxImagePad = (int) Math.ceil(borderStrokeWidth);
+    private BufferedImage boxImage;
+    // drawn in place of an icon that is still loading
+    private BufferedImage placeholderImage;
+
+    // Reel icons scaled to iconWidth x iconHeight, most recently used last. Only touched on the client thread.
+    private static final int ICON_CACHE_SIZE = 64;
+    private final Map<Integer, BufferedImage> scaledIcons = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, BufferedImage> eldest)
+        {
+            return size() > ICON_CACHE_SIZE;
+        }
+    };
 
     @Inject
     public ChanceManOverlay(Client client, ItemManager itemManager)
@@ -82,13 +116,13 @@ public class ChanceManOverlay extends Overlay
     }
 
     /**
-     * Starts the roll animation.
+     * Starts the roll animation. Must be called on the client thread.
      *
-     * @param dummy Unused parameter.
+     * @param finalItemId The item the reel stops on.
      * @param rollDurationMs The duration of the roll phase in milliseconds.
      * @param randomLockedItemSupplier Supplier for obtaining random locked items.
      */
-    public void startRollAnimation(int dummy, int rollDurationMs, Supplier<Integer> randomLockedItemSupplier)
+    public void startRollAnimation(int finalItemId, int rollDurationMs, Supplier<Integer> randomLockedItemSupplier)
     {
         if (config.enableRollSounds())
         {
@@ -104,36 +138,155 @@ public class ChanceManOverlay extends Overlay
             }
         }
         this.rollDuration = rollDurationMs;
-        this.rollStartTime = System.currentTimeMillis();
-        this.rollOffset = 0f;
-        this.currentSpeed = initialSpeed;
-        this.randomLockedItemSupplier = randomLockedItemSupplier;
-        this.isAnimating = true;
+        this.finalItemId = finalItemId;
 
-        synchronized (rollingItems) {
-            rollingItems.clear();
-            for (int i = 0; i < iconCount; i++)
-            {
-                rollingItems.add(randomLockedItemSupplier.get());
-            }
+        // round the distance to whole icons so the reel stops with the final item exactly centered
+        float slot = iconWidth + spacing;
+        naturalTravel = distanceAt(rollDurationMs / 1000f);
+        int shifts = Math.max(1, Math.round(naturalTravel / slot));
+        travel = shifts * slot;
+
+        int[] strip = new int[shifts + iconCount];
+        for (int i = 0; i < strip.length; i++)
+        {
+            strip[i] = randomLockedItemSupplier.get();
         }
+        strip[shifts + iconCount / 2] = finalItemId;
+        reel = strip;
+        reelIcons = prefetchIcons(strip);
+
+        this.rollStartTime = System.nanoTime();
+        this.isAnimating = true;
     }
 
     /**
-     * Retrieves the final item ID based on the center icon after the roll animation finishes.
+     * Hides the current roll animation, if any.
+     */
+    public void stopRollAnimation()
+    {
+        this.isAnimating = false;
+    }
+
+    /**
+     * Retrieves the item the current or last roll animation stops on.
      *
      * @return The final item ID.
      */
     public int getFinalItem()
     {
-        synchronized (rollingItems) {
-            int centerIndex = iconCount / 2;
-            if (rollingItems.size() > centerIndex)
+        return finalItemId;
+    }
+
+    /**
+     * Looks up or loads and scales the icons of {@code strip}. Icons that are still loading are filled in
+     * when they arrive, which is well before the reel reaches them for most of the strip.
+     *
+     * @return the scaled icon of each entry of {@code strip}
+     */
+    private BufferedImage[] prefetchIcons(int[] strip)
+    {
+        BufferedImage[] icons = new BufferedImage[strip.length];
+        for (int i = 0; i < strip.length; i++)
+        {
+            int itemId = strip[i];
+            icons[i] = scaledIcons.get(itemId);
+            if (icons[i] != null)
             {
-                return rollingItems.get(centerIndex);
+                continue;
             }
+            int index = i;
+            loadIcon(itemId, image -> icons[index] = scaledIcons.computeIfAbsent(itemId, id -> scaleIcon(image)));
         }
-        return 0;
+        return icons;
+    }
+
+    /**
+     * Loads an item's icon and passes it to {@code onLoaded} on the client thread, right away if it is
+     * already loaded.
+     */
+    void loadIcon(int itemId, Consumer<BufferedImage> onLoaded)
+    {
+        AsyncBufferedImage image = itemManager.getImage(itemId, 1, false);
+        image.onLoaded(() -> onLoaded.accept(image));
+    }
+
+    private BufferedImage scaleIcon(BufferedImage image)
+    {
+        BufferedImage scaled = new BufferedImage(iconWidth, iconHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = scaled.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, iconWidth, iconHeight, null);
+        g.dispose();
+        return scaled;
+    }
+
+    /**
+     * @return the background box with its border, drawn once
+     */
+    private BufferedImage getBoxImage(int boxWidth, int boxHeight)
+    {
+        if (boxImage == null)
+        {
+            BufferedImage image = new BufferedImage(boxWidth + boxImagePad * 2, boxHeight + boxImagePad * 2,
+                    BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            Shape backgroundRect = new RoundRectangle2D.Float(
+                    boxImagePad, boxImagePad, boxWidth, boxHeight,
+                    cornerRadius, cornerRadius
+            );
+            g.setColor(BACKGROUND_COLOR);
+            g.fill(backgroundRect);
+            g.setColor(BORDER_COLOR);
+            g.setStroke(borderStroke);
+            g.draw(backgroundRect);
+            g.dispose();
+            boxImage = image;
+        }
+        return boxImage;
+    }
+
+    /**
+     * @return the stand-in for an icon that has not loaded yet, drawn once; compositing a translucent
+     *         fill every frame would allocate
+     */
+    private BufferedImage getPlaceholderImage()
+    {
+        if (placeholderImage == null)
+        {
+            BufferedImage image = new BufferedImage(iconWidth, iconHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setColor(PLACEHOLDER_COLOR);
+            g.fillRect(4, 4, iconWidth - 8, iconHeight - 8);
+            g.dispose();
+            placeholderImage = image;
+        }
+        return placeholderImage;
+    }
+
+    /**
+     * @return how far the speed curve has moved the reel after {@code seconds}, in px
+     */
+    private float distanceAt(float seconds)
+    {
+        float slowedAt = (initialSpeed - minSpeed) / deceleration;
+        if (seconds <= slowedAt)
+        {
+            return initialSpeed * seconds - deceleration * seconds * seconds / 2f;
+        }
+        return distanceAt(slowedAt) + minSpeed * (seconds - slowedAt);
+    }
+
+    /**
+     * @return the reel's position {@code elapsedMs} into the spin, scaled so it ends at {@link #travel}
+     */
+    private float positionAt(long elapsedMs)
+    {
+        if (elapsedMs >= rollDuration)
+        {
+            return travel;
+        }
+        return travel * distanceAt(elapsedMs / 1000f) / naturalTravel;
     }
 
     /**
@@ -150,11 +303,7 @@ public class ChanceManOverlay extends Overlay
             return null;
         }
 
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-        long now = System.currentTimeMillis();
-        long elapsed = now - rollStartTime;
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - rollStartTime);
         boolean inHighlightPhase = (elapsed > rollDuration);
 
         if (elapsed > rollDuration + highlightDuration)
@@ -175,55 +324,30 @@ public class ChanceManOverlay extends Overlay
         int boxHeight = iconHeight + outerPad * 2;
         int boxLeftX = centerX - (boxWidth / 2) + boxShift;
 
-        Shape backgroundRect = new RoundRectangle2D.Float(
-                boxLeftX, boxTopY, boxWidth, boxHeight,
-                cornerRadius, cornerRadius
-        );
-        g.setColor(new Color(0, 0, 0, 180));
-        g.fill(backgroundRect);
-        g.setColor(new Color(0, 0, 0, 255));
-        g.setStroke(new BasicStroke(borderStrokeWidth));
-        g.draw(backgroundRect);
-
-        synchronized (rollingItems) {
-            if (!inHighlightPhase)
-            {
-                float dt = 1f / 60f;
-                rollOffset += currentSpeed * dt;
-                currentSpeed = Math.max(currentSpeed - deceleration * dt, minSpeed);
-
-                if (rollOffset >= (iconWidth + spacing))
-                {
-                    rollOffset -= (iconWidth + spacing);
-                    if (!rollingItems.isEmpty())
-                    {
-                        rollingItems.remove(0);
-                    }
-                    rollingItems.add(randomLockedItemSupplier.get());
-                }
-            }
+        g.drawImage(getBoxImage(boxWidth, boxHeight), boxLeftX - boxImagePad, boxTopY - boxImagePad, null);
 
-            int iconsLeftX = centerX - (totalIconsWidth / 2);
-            int iconsY = boxTopY + outerPad;
-            for (int i = 0; i < rollingItems.size(); i++)
-            {
-                int itemId = rollingItems.get(i);
-                BufferedImage image = itemManager.getImage(itemId, 1, false);
-                if (image != null)
-                {
-                    int drawX = (int) (iconsLeftX + i * (iconWidth + spacing) - rollOffset);
-                    g.drawImage(image, drawX, iconsY, iconWidth, iconHeight, null);
-                }
-            }
+        float slot = iconWidth + spacing;
+        float position = positionAt(elapsed);
+        int first = Math.min((int) (position / slot), reel.length - iconCount);
+        float rollOffset = position - first * slot;
 
-            if (inHighlightPhase)
-            {
-                int centerIndex = iconCount / 2;
-                int highlightX = (int) (iconsLeftX + centerIndex * (iconWidth + spacing) - rollOffset);
-                g.setColor(Color.YELLOW);
-                g.setStroke(new BasicStroke(3f));
-                g.drawRect(highlightX, iconsY, iconWidth, iconHeight);
-            }
+        int iconsLeftX = centerX - (totalIconsWidth / 2);
+        int iconsY = boxTopY + outerPad;
+        for (int i = 0; i < iconCount; i++)
+        {
+            int drawX = (int) (iconsLeftX + i * slot - rollOffset);
+            BufferedImage icon = reelIcons[first + i];
+            // still loading if null; the icon takes the placeholder's place once it has been scaled
+            g.drawImage(icon != null ? icon : getPlaceholderImage(), drawX, iconsY, null);
+        }
+
+        if (inHighlightPhase)
+        {
+            int centerIndex = iconCount / 2;
+            int highlightX = (int) (iconsLeftX + centerIndex * slot - rollOffset);
+            g.setColor(Color.YELLOW);
+            g.setStroke(highlightStroke);
+            g.drawRect(highlightX, iconsY, iconWidth, iconHeight);
         }
         return null;
     }
@@ -1,7 +1,12 @@
 package com.chanceman;
 
+import com.chanceman.managers.ItemIdSet;
+import com.chanceman.managers.ItemNameIndex;
+import com.chanceman.managers.ItemNameIndexManager;
+import com.chanceman.managers.ItemStateStore;
 import com.chanceman.managers.RollAnimationManager;
 import com.chanceman.managers.RolledItemsManager;
+import com.chanceman.managers.TradeableItemsManager;
 import com.chanceman.managers.UnlockedItemsManager;
 import net.runelite.api.ItemComposition;
 import net.runelite.client.callback.ClientThread;
@@ -10,20 +15,23 @@ import net.runelite.client.ui.PluginPanel;
 import net.runelite.client.util.LinkBrowser;
 
 import javax.swing.*;
-import javax.swing.DefaultListModel;
 import javax.swing.JList;
 import javax.swing.JScrollPane;
 import javax.swing.ListSelectionModel;
 import javax.swing.ListCellRenderer;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.border.*;
 import java.awt.Component;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 /**
@@ -37,40 +45,81 @@ public class ChanceManPanel extends PluginPanel
     private final UnlockedItemsManager unlockedItemsManager;
     private final RolledItemsManager rolledItemsManager;
     private final ItemManager itemManager;
-    private final HashSet<Integer> allTradeableItems;
+    private final TradeableItemsManager tradeableItemsManager;
     private final ClientThread clientThread;
     private final RollAnimationManager rollAnimationManager;
+    private final ItemNameIndexManager itemNameIndexManager;
+    private final ExecutorService searchExecutor;
+
+    // Caches for item icons and names, bounded so scrolling through a large collection does not keep every item
+    private static final int ICON_CACHE_SIZE = 512;
+    private static final int NAME_CACHE_SIZE = 1024;
+    private final ItemIconCache itemIconCache;
+    private final Map<Integer, String> itemNameCache = new LinkedHashMap<Integer, String>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest)
+        {
+            return size() > NAME_CACHE_SIZE;
+        }
+    };
 
-    // Caches for item icons and names
-    private final Map<Integer, ImageIcon> itemIconCache = new HashMap<>();
-    private final Map<Integer, String> itemNameCache = new HashMap<>();
-
-    // CardLayout panel to show either Rolled or Unlocked view
+    // CardLayout panel to show either Rolled or Unlocked view, as a list or an icon grid
     private final JPanel centerCardPanel = new JPanel(new CardLayout());
-    private final DefaultListModel<Integer> rolledModel = new DefaultListModel<>();
+    private final ItemListModel rolledModel = new ItemListModel();
     private final JList<Integer> rolledList = new JList<>(rolledModel);
-    private final DefaultListModel<Integer> unlockedModel = new DefaultListModel<>();
+    private final ItemListModel unlockedModel = new ItemListModel();
     private final JList<Integer> unlockedList = new JList<>(unlockedModel);
 
-    // View selection row: 3 buttons (swap, filter unlocked-not-rolled, filter unlocked-and-rolled)
+    // View selection row: 5 buttons (swap, grid view, filter unlocked-not-rolled, filter unlocked-and-rolled,
+    // filter rolled-but-locked)
     private final JButton swapViewButton = new JButton("🔄");
+    private final JToggleButton gridViewButton = new JToggleButton("▦");
     private final JToggleButton filterUnlockedNotRolledButton = new JToggleButton("🔓");
     private final JToggleButton filterUnlockedAndRolledButton = new JToggleButton("🔀");
+    private final JToggleButton filterRolledNotUnlockedButton = new JToggleButton("🔒");
+    private final JToggleButton[] ownershipButtons = {
+            filterUnlockedNotRolledButton, filterUnlockedAndRolledButton, filterRolledNotUnlockedButton
+    };
+
+    // Search and filter inputs
+    private final JTextField searchField = new JTextField();
+    private final JComboBox<ItemViewFilter.Category> categoryBox = new JComboBox<>(ItemViewFilter.Category.values());
+    private final JTextField minValueField = new JTextField();
+    private final JTextField maxValueField = new JTextField();
 
     // Flag for current view: true = showing Unlocked, false = showing Rolled
     private boolean showingUnlocked = true;
+    // Flag for current view mode: true = icon grid, false = list
+    private boolean showingGrid = false;
 
     // Search text
-    private String searchText = "";
+    private volatile String searchText = "";
+    // Whether a search that finds nothing falls back to names within a typo or two
+    private volatile boolean typoTolerant = true;
+    // Typing restarts this, so the search runs once the user pauses rather than on every key
+    private static final int SEARCH_DEBOUNCE_MS = 150;
+    private final Timer searchDebounce = new Timer(SEARCH_DEBOUNCE_MS, e -> applySearchInputs());
+
+    // The latest list update; older ones stop early and are never shown
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+    // The update the lists currently show (EDT only)
+    private int shownGeneration;
+    private Future<?> pendingSearch;
+    // How many items a search filters between checks for a newer one
+    private static final int CANCEL_CHECK_INTERVAL = 256;
 
     // Single count label at the bottom
     private final JLabel countLabel = new JLabel("Unlocked: 0/0");
 
+    // Set while the account's items could not be loaded; the count label says so instead of showing counts
+    private volatile boolean loadFailed = false;
+
     // Roll button for manual roll actions
     private final JButton rollButton = new JButton("Roll");
 
-    // Active filter: "NONE", "UNLOCKED_NOT_ROLLED", or "UNLOCKED_AND_ROLLED"
-    private String activeFilter = "NONE";
+    // Active filter toggles, category and value range
+    private volatile ItemViewFilter activeFilter = ItemViewFilter.NONE;
 
     // Join Discord Button links to discord invite
     private final JButton discordButton = new JButton();
@@ -84,25 +133,32 @@ public class ChanceManPanel extends PluginPanel
      * @param unlockedItemsManager Manager for unlocked items.
      * @param rolledItemsManager   Manager for rolled items.
      * @param itemManager          The item manager.
-     * @param allTradeableItems    List of all tradeable item IDs.
+     * @param tradeableItemsManager Source of the rollable item IDs.
      * @param clientThread         The client thread for scheduling UI updates.
      * @param rollAnimationManager The roll animation manager to trigger animations.
+     * @param itemNameIndexManager Source of the item names searched by the panel.
+     * @param searchExecutor       Worker the item lists are filtered on.
      */
     public ChanceManPanel(
             UnlockedItemsManager unlockedItemsManager,
             RolledItemsManager rolledItemsManager,
             ItemManager itemManager,
-            HashSet<Integer> allTradeableItems,
+            TradeableItemsManager tradeableItemsManager,
             ClientThread clientThread,
-            RollAnimationManager rollAnimationManager
+            RollAnimationManager rollAnimationManager,
+            ItemNameIndexManager itemNameIndexManager,
+            ExecutorService searchExecutor
     )
     {
         this.unlockedItemsManager = unlockedItemsManager;
         this.rolledItemsManager = rolledItemsManager;
         this.itemManager = itemManager;
-        this.allTradeableItems = allTradeableItems;
+        this.tradeableItemsManager = tradeableItemsManager;
         this.clientThread = clientThread;
         this.rollAnimationManager = rollAnimationManager;
+        this.itemNameIndexManager = itemNameIndexManager;
+        this.searchExecutor = searchExecutor;
+        this.itemIconCache = new ItemIconCache(itemManager, clientThread, ICON_CACHE_SIZE);
         init();
     }
 
@@ -125,59 +181,56 @@ public class ChanceManPanel extends PluginPanel
         topPanel.add(Box.createVerticalStrut(10));
 
         // Search Bar
+        searchDebounce.setRepeats(false);
         topPanel.add(buildSearchBar());
         topPanel.add(Box.createVerticalStrut(10));
 
-        // Button row: 3 columns, each for one button
-        JPanel buttonRowPanel = new JPanel(new GridLayout(1, 3, 10, 0));
+        // Button row: 5 columns, each for one button
+        JPanel buttonRowPanel = new JPanel(new GridLayout(1, 5, 5, 0));
         buttonRowPanel.setOpaque(false);
 
-        // Style the 3 buttons identically
+        // Style the 5 buttons identically
         styleButton(swapViewButton);
-        styleToggleButton(filterUnlockedNotRolledButton);
-        styleToggleButton(filterUnlockedAndRolledButton);
+        styleToggleButton(gridViewButton);
+        for (JToggleButton button : ownershipButtons)
+        {
+            styleToggleButton(button);
+        }
 
         // Tooltips & actions
         swapViewButton.setToolTipText("Swap between Unlocked and Rolled views");
         swapViewButton.addActionListener(e -> toggleView());
 
-        filterUnlockedNotRolledButton.setToolTipText("Filter: Show items that are unlocked but not rolled");
-        filterUnlockedNotRolledButton.addActionListener(e ->
+        gridViewButton.setToolTipText("Switch between the item list and an icon grid");
+        gridViewButton.addActionListener(e ->
         {
-            if (filterUnlockedNotRolledButton.isSelected())
-            {
-                activeFilter = "UNLOCKED_NOT_ROLLED";
-                filterUnlockedAndRolledButton.setSelected(false);
-            }
-            else
-            {
-                activeFilter = "NONE";
-            }
-            updatePanel();
+            showingGrid = gridViewButton.isSelected();
+            showCard();
         });
 
+        filterUnlockedNotRolledButton.setToolTipText("Filter: Show items that are unlocked but not rolled");
+        addOwnershipToggle(filterUnlockedNotRolledButton, ItemViewFilter.Ownership.UNLOCKED_NOT_ROLLED);
+
         filterUnlockedAndRolledButton.setToolTipText("Filter: Show items that are both unlocked and rolled");
-        filterUnlockedAndRolledButton.addActionListener(e ->
-        {
-            if (filterUnlockedAndRolledButton.isSelected())
-            {
-                activeFilter = "UNLOCKED_AND_ROLLED";
-                filterUnlockedNotRolledButton.setSelected(false);
-            }
-            else
-            {
-                activeFilter = "NONE";
-            }
-            updatePanel();
-        });
+        addOwnershipToggle(filterUnlockedAndRolledButton, ItemViewFilter.Ownership.UNLOCKED_AND_ROLLED);
+
+        filterRolledNotUnlockedButton.setToolTipText("Filter: Show items that have been rolled but are still locked");
+        addOwnershipToggle(filterRolledNotUnlockedButton, ItemViewFilter.Ownership.ROLLED_NOT_UNLOCKED);
 
         // Add them in left->right order
         buttonRowPanel.add(swapViewButton);
-        buttonRowPanel.add(filterUnlockedNotRolledButton);
-        buttonRowPanel.add(filterUnlockedAndRolledButton);
+        buttonRowPanel.add(gridViewButton);
+        for (JToggleButton button : ownershipButtons)
+        {
+            buttonRowPanel.add(button);
+        }
 
         // Add the row to the top panel
         topPanel.add(buttonRowPanel);
+        topPanel.add(Box.createVerticalStrut(10));
+
+        // Category and value filters
+        topPanel.add(buildFilterPanel());
 
         // EXTRA SPACE between the buttons row and the icon panel
         topPanel.add(Box.createVerticalStrut(10));
@@ -209,6 +262,8 @@ public class ChanceManPanel extends PluginPanel
 
         centerCardPanel.add(rolledContainer, "ROLLED");
         centerCardPanel.add(unlockedContainer, "UNLOCKED");
+        centerCardPanel.add(createGridPanel("Rolled Items", rolledModel), "ROLLED_GRID");
+        centerCardPanel.add(createGridPanel("Unlocked Items", unlockedModel), "UNLOCKED_GRID");
         add(centerCardPanel, BorderLayout.CENTER);
 
         // ========== BOTTOM PANEL (Count + Roll) ==========
@@ -241,7 +296,7 @@ public class ChanceManPanel extends PluginPanel
 
         // Default to Unlocked view
         showingUnlocked = true;
-        ((CardLayout) centerCardPanel.getLayout()).show(centerCardPanel, "UNLOCKED");
+        showCard();
         updatePanel();
     }
 
@@ -252,11 +307,15 @@ public class ChanceManPanel extends PluginPanel
     {
         private final JLabel iconLabel = new JLabel();
         private final JLabel nameLabel = new JLabel();
+        // each renderer serves one list; one instance, so repainting a loading row does not queue more repaints
+        private Runnable repaintOnLoad;
 
         public ItemCellRenderer()
         {
             setLayout(new BorderLayout(5, 0));
             setOpaque(true);
+            // keeps rows the same height while their icons load
+            iconLabel.setPreferredSize(new Dimension(36, 32));
             add(iconLabel, BorderLayout.WEST);
             add(nameLabel, BorderLayout.CENTER);
             nameLabel.setFont(new Font("SansSerif", Font.PLAIN, 11));
@@ -269,25 +328,18 @@ public class ChanceManPanel extends PluginPanel
                                                       boolean isSelected,
                                                       boolean cellHasFocus)
         {
-            // icon
-            iconLabel.setIcon(getItemIcon(itemId));
-
-            // name (async load if missing)
-            String name = itemNameCache.get(itemId);
-            if (name == null)
-            {
-                nameLabel.setText("Loading…");
-                getItemNameAsync(itemId, n ->
-                {
-                    itemNameCache.put(itemId, n);
-                    list.repaint(list.getCellBounds(index, index));
-                });
-            }
-            else
+            if (repaintOnLoad == null)
             {
-                nameLabel.setText(name);
+                repaintOnLoad = list::repaint;
             }
 
+            // icon (blank until it has loaded)
+            iconLabel.setIcon(itemIconCache.get(itemId, repaintOnLoad));
+
+            // name (async load if it is not indexed yet)
+            String name = getItemName(itemId, () -> list.repaint(list.getCellBounds(index, index)));
+            nameLabel.setText(name != null ? name : "Loading…");
+
             // selection styling
             if (isSelected)
             {
@@ -304,24 +356,74 @@ public class ChanceManPanel extends PluginPanel
         }
     }
 
+    /**
+     * Wires up one of the mutually exclusive filter toggles: selecting it applies its filter and
+     * deselects the others, deselecting it shows every item again.
+     *
+     * @param button    The toggle button.
+     * @param ownership The items the filter keeps.
+     */
+    private void addOwnershipToggle(JToggleButton button, ItemViewFilter.Ownership ownership)
+    {
+        button.addActionListener(e ->
+        {
+            if (button.isSelected())
+            {
+                activeFilter = activeFilter.withOwnership(ownership);
+                for (JToggleButton other : ownershipButtons)
+                {
+                    if (other != button)
+                    {
+                        other.setSelected(false);
+                    }
+                }
+            }
+            else
+            {
+                activeFilter = activeFilter.withOwnership(ItemViewFilter.Ownership.ALL);
+            }
+            updatePanel();
+        });
+    }
+
     /**
      * Toggles between Unlocked view and Rolled view.
      */
     private void toggleView()
     {
         showingUnlocked = !showingUnlocked;
-        CardLayout cl = (CardLayout) centerCardPanel.getLayout();
-        if (showingUnlocked)
-        {
-            cl.show(centerCardPanel, "UNLOCKED");
-        }
-        else
-        {
-            cl.show(centerCardPanel, "ROLLED");
-        }
+        showCard();
         updatePanel();
     }
 
+    /**
+     * Shows the card for the current view and view mode.
+     */
+    private void showCard()
+    {
+        String card = showingUnlocked ? "UNLOCKED" : "ROLLED";
+        ((CardLayout) centerCardPanel.getLayout()).show(centerCardPanel, showingGrid ? card + "_GRID" : card);
+    }
+
+    /**
+     * Creates a titled, scrollable icon grid over the given model.
+     *
+     * @param title The title to display on the border.
+     * @param model The items to show.
+     * @return The container panel.
+     */
+    private JPanel createGridPanel(String title, ItemListModel model)
+    {
+        ItemGridView grid = new ItemGridView(model, itemIconCache, itemId -> getItemName(itemId, null));
+        JScrollPane scroll = new JScrollPane(
+                grid,
+                JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED,
+                JScrollPane.HORIZONTAL_SCROLLBAR_NEVER
+        );
+        scroll.setPreferredSize(new Dimension(250, 300));
+        return createTitledPanel(title, scroll);
+    }
+
     /**
      * Creates a titled container panel that wraps the given content panel.
      *
@@ -356,6 +458,7 @@ public class ChanceManPanel extends PluginPanel
         button.setForeground(Color.WHITE);
         button.setFont(new Font("SansSerif", Font.BOLD, 12));
         button.setPreferredSize(new Dimension(50, 30));
+        button.setMargin(new Insets(0, 0, 0, 0));
     }
 
     /**
@@ -370,6 +473,20 @@ public class ChanceManPanel extends PluginPanel
         button.setForeground(Color.WHITE);
         button.setFont(new Font("SansSerif", Font.BOLD, 12));
         button.setPreferredSize(new Dimension(50, 30));
+        button.setMargin(new Insets(0, 0, 0, 0));
+    }
+
+    /**
+     * Styles a text field like the search field.
+     *
+     * @param field The text field to style.
+     */
+    private void styleTextField(JTextField field)
+    {
+        field.setBackground(new Color(45, 45, 45));
+        field.setForeground(Color.WHITE);
+        field.setCaretColor(Color.WHITE);
+        field.setBorder(new EmptyBorder(2, 5, 2, 5));
     }
 
     /**
@@ -436,24 +553,12 @@ public class ChanceManPanel extends PluginPanel
         searchContainer.add(searchIcon, BorderLayout.WEST);
 
         // Search field
-        JTextField searchField = new JTextField();
         searchField.setBackground(new Color(45, 45, 45));
         searchField.setForeground(Color.WHITE);
         searchField.setBorder(null);
         searchField.setCaretColor(Color.WHITE);
         searchField.setMaximumSize(new Dimension(Integer.MAX_VALUE, 24));
-        searchField.addKeyListener(new KeyAdapter()
-        {
-            @Override
-            public void keyReleased(KeyEvent e)
-            {
-                SwingUtilities.invokeLater(() ->
-                {
-                    searchText = searchField.getText().toLowerCase();
-                    updatePanel();
-                });
-            }
-        });
+        searchField.addKeyListener(debouncedInput());
         searchContainer.add(searchField, BorderLayout.CENTER);
 
         // Clear label to reset search
@@ -467,6 +572,7 @@ public class ChanceManPanel extends PluginPanel
             @Override
             public void mouseClicked(java.awt.event.MouseEvent e)
             {
+                searchDebounce.stop();
                 searchField.setText("");
                 searchText = "";
                 updatePanel();
@@ -478,6 +584,103 @@ public class ChanceManPanel extends PluginPanel
         return searchBarPanel;
     }
 
+    /**
+     * Builds the category selector and the GE value range fields.
+     *
+     * @return The filter panel.
+     */
+    private JPanel buildFilterPanel()
+    {
+        JPanel filterPanel = new JPanel(new BorderLayout(5, 0));
+        filterPanel.setOpaque(false);
+        filterPanel.setBorder(new EmptyBorder(0, 5, 0, 5));
+
+        categoryBox.setToolTipText("Filter: Show only items in this category");
+        categoryBox.setFocusable(false);
+        categoryBox.addActionListener(e ->
+        {
+            activeFilter = activeFilter.withCategory((ItemViewFilter.Category) categoryBox.getSelectedItem());
+            updatePanel();
+        });
+        filterPanel.add(categoryBox, BorderLayout.CENTER);
+
+        // GE value range, e.g. "10k" to "1.5m"; a blank field is no limit
+        JPanel valuePanel = new JPanel(new GridLayout(1, 2, 3, 0));
+        valuePanel.setOpaque(false);
+        styleTextField(minValueField);
+        styleTextField(maxValueField);
+        minValueField.setColumns(4);
+        maxValueField.setColumns(4);
+        minValueField.setToolTipText("Filter: Lowest GE value, e.g. 10k");
+        maxValueField.setToolTipText("Filter: Highest GE value, e.g. 1.5m");
+        minValueField.addKeyListener(debouncedInput());
+        maxValueField.addKeyListener(debouncedInput());
+        valuePanel.add(minValueField);
+        valuePanel.add(maxValueField);
+        filterPanel.add(valuePanel, BorderLayout.EAST);
+
+        return filterPanel;
+    }
+
+    /**
+     * @return a key listener that applies the search and value inputs once typing pauses
+     */
+    private KeyAdapter debouncedInput()
+    {
+        return new KeyAdapter()
+        {
+            @Override
+            public void keyReleased(KeyEvent e)
+            {
+                searchDebounce.restart();
+            }
+        };
+    }
+
+    /**
+     * Reads the search text and value range into the active filter and refreshes the lists.
+     */
+    private void applySearchInputs()
+    {
+        searchText = searchField.getText().toLowerCase();
+        activeFilter = activeFilter.withValueRange(
+                parseValue(minValueField.getText(), 0),
+                parseValue(maxValueField.getText(), Integer.MAX_VALUE));
+        updatePanel();
+    }
+
+    /**
+     * Parses a GE value such as "2500", "10k" or "1.5m".
+     *
+     * @param text     The text to parse.
+     * @param fallback The value for blank or unreadable text.
+     * @return The value, capped at {@link Integer#MAX_VALUE}.
+     */
+    private static int parseValue(String text, int fallback)
+    {
+        String value = text.trim().toLowerCase().replace(",", "");
+        if (value.isEmpty())
+        {
+            return fallback;
+        }
+        double multiplier = 1;
+        char suffix = value.charAt(value.length() - 1);
+        if (suffix == 'k' || suffix == 'm' || suffix == 'b')
+        {
+            multiplier = suffix == 'k' ? 1e3 : suffix == 'm' ? 1e6 : 1e9;
+            value = value.substring(0, value.length() - 1);
+        }
+        try
+        {
+            double parsed = Double.parseDouble(value) * multiplier;
+            return parsed >= 0 ? (int) Math.min(Integer.MAX_VALUE, Math.round(parsed)) : fallback;
+        }
+        catch (NumberFormatException e)
+        {
+            return fallback;
+        }
+    }
+
     /**
      * Triggers a manual roll animation when the Roll button is clicked.
      *
@@ -485,19 +688,12 @@ public class ChanceManPanel extends PluginPanel
      */
     private void performManualRoll(java.awt.event.ActionEvent e)
     {
-        if (rollAnimationManager.isRolling())
+        if (rollAnimationManager.isRolling() || tradeableItemsManager.isIndexing())
         {
             return;
         }
-        List<Integer> locked = new ArrayList<>();
-        for (int id : allTradeableItems)
-        {
-            if (!unlockedItemsManager.isUnlocked(id))
-            {
-                locked.add(id);
-            }
-        }
-        if (locked.isEmpty())
+        int randomItemId = rollAnimationManager.pickLockedItem();
+        if (randomItemId < 0)
         {
             JOptionPane.showMessageDialog(
                     this,
@@ -507,106 +703,228 @@ public class ChanceManPanel extends PluginPanel
             );
             return;
         }
-        int randomItemId = locked.get(new Random().nextInt(locked.size()));
-        rollAnimationManager.setManualRoll(true);
-        rollAnimationManager.enqueueRoll(randomItemId);
+        rollAnimationManager.enqueueManualRoll(randomItemId);
+    }
+
+    /**
+     * Sets whether a search that finds no names containing the search text shows near misses instead,
+     * and refreshes the lists. May be called from any thread.
+     */
+    public void setTypoTolerant(boolean typoTolerant)
+    {
+        this.typoTolerant = typoTolerant;
+        updatePanel();
     }
 
     /**
      * Main update routine: filters the active set (Unlocked or Rolled), applies search text and filter toggles,
      * updates the single count label, and then builds the item list without trailing gaps.
+     * Filtering runs on the search worker against the item name index, and only the latest update
+     * reaches the EDT; an update that is superseded while it runs stops early. May be called from any thread.
      */
     public void updatePanel()
     {
-        clientThread.invokeLater(() ->
+        int generation = searchGeneration.incrementAndGet();
+        String query = searchText;
+        ItemViewFilter filter = activeFilter;
+        synchronized (searchGeneration)
         {
-            // Build filtered lists
-            List<Integer> filteredRolled = new ArrayList<>();
-            for (Integer id : rolledItemsManager.getRolledItems())
+            if (pendingSearch != null)
             {
-                ItemComposition comp = itemManager.getItemComposition(id);
-                if (comp != null)
-                {
-                    String name = comp.getName().toLowerCase();
-                    if (searchText.isEmpty() || name.contains(searchText))
-                    {
-                        filteredRolled.add(id);
-                    }
-                }
+                pendingSearch.cancel(false);
+            }
+            try
+            {
+                pendingSearch = searchExecutor.submit(() -> filterItems(generation, query, filter));
+            }
+            catch (RejectedExecutionException e)
+            {
+                // the plugin is shutting down
+                pendingSearch = null;
             }
+        }
+    }
 
-            Collections.reverse(filteredRolled);
+    /**
+     * Builds the filtered lists for one update and hands them to the EDT unless a newer update has started.
+     */
+    private void filterItems(int generation, String query, ItemViewFilter filter)
+    {
+        ItemNameIndex names = itemNameIndexManager.getIndex();
+        ItemStateStore.Snapshot rolled = rolledItemsManager.getRolledItems();
+        ItemStateStore.Snapshot unlocked = unlockedItemsManager.getUnlockedItems();
+        // one index lookup for both lists
+        ItemIdSet found = search(names, query);
+        if (generation != searchGeneration.get())
+        {
+            return;
+        }
 
-            List<Integer> filteredUnlocked = new ArrayList<>();
-            for (Integer id : unlockedItemsManager.getUnlockedItems())
+        // Combine the filter's sets into the items each list shows, then put those in list order
+        ItemIdSet rolledView = filter.rolledView(unlocked.getItems(), rolled.getItems(), found, names);
+        ItemIdSet unlockedView = filter.unlockedView(unlocked.getItems(), rolled.getItems(), found, names);
+        int[] filteredRolled = inOrder(rolled, rolledView, generation);
+        int[] filteredUnlocked = inOrder(unlocked, unlockedView, generation);
+        if (filteredRolled == null || filteredUnlocked == null)
+        {
+            return;
+        }
+
+        SwingUtilities.invokeLater(() ->
+        {
+            if (generation != searchGeneration.get())
             {
-                ItemComposition comp = itemManager.getItemComposition(id);
-                if (comp != null)
-                {
-                    String name = comp.getName().toLowerCase();
-                    if (searchText.isEmpty() || name.contains(searchText))
-                    {
-                        filteredUnlocked.add(id);
-                    }
-                }
+                return;
             }
+            shownGeneration = generation;
+            rolledModel.setItems(filteredRolled);
+            unlockedModel.setItems(filteredUnlocked);
+            updateIndexingStatus();
+        });
+    }
 
-            Collections.reverse(filteredUnlocked);
+    /**
+     * @return the items whose name matches the search text, or null if there is no search text
+     */
+    private ItemIdSet search(ItemNameIndex names, String query)
+    {
+        return query.isEmpty() ? null : names.search(query, typoTolerant);
+    }
 
-            // Apply active filter toggles
-            if (activeFilter.equals("UNLOCKED_NOT_ROLLED"))
+    /**
+     * @return the items in {@code view}, newest first as in {@code items}, or null if a newer update started
+     */
+    private int[] inOrder(ItemStateStore.Snapshot items, ItemIdSet view, int generation)
+    {
+        int[] matches = new int[view.size()];
+        int count = 0;
+        for (int i = items.size() - 1; i >= 0 && count < matches.length; i--)
+        {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && generation != searchGeneration.get())
             {
-                filteredUnlocked.removeIf(id -> rolledItemsManager.getRolledItems().contains(id));
-                filteredRolled.clear();
+                return null;
             }
-            else if (activeFilter.equals("UNLOCKED_AND_ROLLED"))
+            int id = items.get(i);
+            if (view.contains(id))
             {
-                filteredUnlocked.removeIf(id -> !rolledItemsManager.getRolledItems().contains(id));
-                filteredRolled.removeIf(id -> !unlockedItemsManager.getUnlockedItems().contains(id));
+                matches[count++] = id;
             }
+        }
+        return Arrays.copyOf(matches, count);
+    }
 
-            SwingUtilities.invokeLater(() ->
+    /**
+     * Adds the items of completed rolls to the top of the lists without refiltering the rest: the items
+     * the rolls were queued for to the Rolled list, and their results to the Unlocked list. Items already
+     * shown by a full update are not added again. Falls back to a full update when the lists are about to
+     * be replaced anyway, or when the active filter compares the two lists, so unlocking can also change
+     * the Rolled list. May be called from any thread.
+     *
+     * @param rolledItemIds   The items the rolls were queued for, oldest first; a manual roll has none.
+     * @param unlockedItemIds The unlocked items, oldest first.
+     */
+    public void rollsCompleted(int[] rolledItemIds, int[] unlockedItemIds)
+    {
+        SwingUtilities.invokeLater(() ->
+        {
+            ItemViewFilter filter = activeFilter;
+            if (shownGeneration != searchGeneration.get() || filter.dependsOnRolledAndUnlocked())
             {
-                rolledModel.clear();
-                for (int id : filteredRolled)
-                {
-                    rolledModel.addElement(id);
-                }
+                updatePanel();
+                return;
+            }
+            // the same filter as a full update, applied to just the new items
+            ItemNameIndex names = itemNameIndexManager.getIndex();
+            ItemIdSet found = search(names, searchText);
+            ItemIdSet rolledView = filter.rolledView(unlockedItemsManager.getUnlockedItems().getItems(),
+                    ItemIdSet.of(rolledItemIds), found, names);
+            ItemIdSet unlockedView = filter.unlockedView(ItemIdSet.of(unlockedItemIds),
+                    rolledItemsManager.getRolledItems().getItems(), found, names);
+            rolledModel.prependMissing(newestFirst(rolledItemIds, rolledView));
+            unlockedModel.prependMissing(newestFirst(unlockedItemIds, unlockedView));
+            updateIndexingStatus();
+        });
+    }
 
-                unlockedModel.clear();
-                for (int id : filteredUnlocked)
-                {
-                    unlockedModel.addElement(id);
-                }
+    /**
+     * @return the items of {@code itemIds} that are in {@code view}, newest first
+     */
+    private static int[] newestFirst(int[] itemIds, ItemIdSet view)
+    {
+        int[] shown = new int[itemIds.length];
+        int count = 0;
+        for (int i = itemIds.length - 1; i >= 0; i--)
+        {
+            int id = itemIds[i];
+            if (view.contains(id))
+            {
+                shown[count++] = id;
+            }
+        }
+        return Arrays.copyOf(shown, count);
+    }
 
-                int total = allTradeableItems.size();
-                countLabel.setText(showingUnlocked
-                        ? "Unlocked: " + unlockedModel.size() + "/" + total
-                        : "Rolled:  " + rolledModel.size()   + "/" + total);
-            });
-        });
+    /**
+     * Sets whether the last attempt to load the account's items failed. Takes effect with the next update.
+     * May be called from any thread.
+     */
+    public void setLoadFailed(boolean loadFailed)
+    {
+        this.loadFailed = loadFailed;
     }
 
     /**
-     * Retrieves (and caches) the item icon for a given item ID.
+     * Updates the count label and Roll button, showing indexing progress instead of the
+     * counts while the rollable item list is being rebuilt, and a notice while the account's
+     * items could not be loaded. Must be called on the EDT.
+     */
+    public void updateIndexingStatus()
+    {
+        boolean indexing = tradeableItemsManager.isIndexing();
+        rollButton.setEnabled(!indexing && !loadFailed);
+        if (loadFailed)
+        {
+            countLabel.setText("Could not load your items, retrying…");
+            return;
+        }
+        if (indexing)
+        {
+            countLabel.setText("Indexing items… " + tradeableItemsManager.getProgressPercent() + "%");
+            return;
+        }
+        int total = tradeableItemsManager.getItems().size();
+        countLabel.setText(showingUnlocked
+                ? "Unlocked: " + unlockedModel.getSize() + "/" + total
+                : "Rolled:  " + rolledModel.getSize()   + "/" + total);
+    }
+
+    /**
+     * Looks up the item name for a given item ID: from the name index, else from the names loaded on demand,
+     * else starts loading it. Must be called on the EDT.
      *
-     * @param itemId The item ID.
-     * @return The ImageIcon for the item, or null if not available.
+     * @param itemId   The item ID.
+     * @param onLoaded Run once the name has been loaded, if it had to be; may be null.
+     * @return The item name, or null while it is loading.
      */
-    private ImageIcon getItemIcon(int itemId)
+    private String getItemName(int itemId, Runnable onLoaded)
     {
-        if (itemIconCache.containsKey(itemId))
+        String name = itemNameIndexManager.getIndex().getName(itemId);
+        if (name == null)
         {
-            return itemIconCache.get(itemId);
+            name = itemNameCache.get(itemId);
         }
-        BufferedImage image = itemManager.getImage(itemId, 1, false);
-        if (image == null)
+        if (name == null)
         {
-            return null;
+            getItemNameAsync(itemId, n ->
+            {
+                itemNameCache.put(itemId, n);
+                if (onLoaded != null)
+                {
+                    onLoaded.run();
+                }
+            });
         }
-        ImageIcon icon = new ImageIcon(image);
-        itemIconCache.put(itemId, icon);
-        return icon;
+        return name;
     }
 
     /**
@@ -10,10 +10,17 @@ import com.chanceman.filters.ItemsFilter;
 import com.chanceman.ui.DropsTabUI;
 import com.google.gson.Gson;
 import com.google.inject.Provides;
-import lombok.Getter;
+import com.chanceman.managers.ItemIdSet;
+import com.chanceman.managers.ItemNameIndexManager;
+import com.chanceman.managers.ItemStateStore;
+import com.chanceman.managers.LockedItemIndex;
 import com.chanceman.managers.RollAnimationManager;
+import com.chanceman.managers.RollAuditManager;
 import com.chanceman.managers.RolledItemsManager;
+import com.chanceman.managers.TradeableItemsChanged;
+import com.chanceman.managers.TradeableItemsManager;
 import com.chanceman.managers.UnlockedItemsManager;
+import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
 import net.runelite.api.events.*;
 import net.runelite.api.widgets.Widget;
@@ -33,9 +40,12 @@ import javax.inject.Inject;
 import javax.swing.*;
 import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+@Slf4j
 @PluginDescriptor(
         name = "ChanceMan",
         description = "Locks tradeable items until unlocked via a random roll.",
@@ -72,6 +82,14 @@ public class ChanceManPlugin extends Plugin
     @Inject
     private RollAnimationManager rollAnimationManager;
     @Inject
+    private TradeableItemsManager tradeableItemsManager;
+    @Inject
+    private LockedItemIndex lockedItemIndex;
+    @Inject
+    private RollAuditManager rollAuditManager;
+    @Inject
+    private ItemNameIndexManager itemNameIndexManager;
+    @Inject
     private EventBus eventBus;
     @Inject
     private ItemsFilter itemsFilter;
@@ -80,11 +98,20 @@ public class ChanceManPlugin extends Plugin
 
     private ChanceManPanel chanceManPanel;
     private NavigationButton navButton;
-    private ExecutorService fileExecutor;
-    @Getter private final HashSet<Integer> allTradeableItems = new LinkedHashSet<>();
+    // one writer thread per store, so both load in parallel while each store's writes stay ordered
+    private ExecutorService unlockedFileExecutor;
+    private ExecutorService rolledFileExecutor;
+    private ExecutorService universeExecutor;
+    // filters the panel's lists off the client thread and the EDT
+    private ExecutorService panelSearchExecutor;
     private static final int GE_SEARCH_BUILD_SCRIPT = 751;
+    private static final int FILE_EXECUTOR_DRAIN_SECONDS = 5;
+    // game ticks to wait before retrying a failed account load
+    private static final int LOAD_RETRY_TICKS = 10;
     private boolean tradeableItemsInitialized = false;
     private boolean featuresActive = false;
+    // ticks until a failed account load is retried, 0 if none is due; client thread only
+    private int loadRetryTicks = 0;
 
     @Provides
     ChanceManConfig provideConfig(ConfigManager configManager)
@@ -114,9 +141,16 @@ public class ChanceManPlugin extends Plugin
         getInjector().getInstance(ActionHandler.class).startUp();
         eventBus.register(accountManager);
         overlayManager.add(chanceManOverlay);
-        fileExecutor = Executors.newSingleThreadExecutor();
-        unlockedItemsManager.setExecutor(fileExecutor);
-        rolledItemsManager.setExecutor(fileExecutor);
+        unlockedFileExecutor = Executors.newSingleThreadExecutor();
+        rolledFileExecutor = Executors.newSingleThreadExecutor();
+        unlockedItemsManager.setExecutor(unlockedFileExecutor);
+        // the roll log is written in step with the unlocks, the roll queue ahead of the rolled items
+        rollAuditManager.setExecutor(unlockedFileExecutor);
+        rollAuditManager.setQueueExecutor(rolledFileExecutor);
+        rolledItemsManager.setExecutor(rolledFileExecutor);
+        universeExecutor = Executors.newSingleThreadExecutor();
+        tradeableItemsManager.setExecutor(universeExecutor);
+        panelSearchExecutor = Executors.newSingleThreadExecutor();
         rollAnimationManager.startUp();
         dropsTabUI.startUp();
 
@@ -124,11 +158,23 @@ public class ChanceManPlugin extends Plugin
                 unlockedItemsManager,
                 rolledItemsManager,
                 itemManager,
-                allTradeableItems,
+                tradeableItemsManager,
                 clientThread,
-                rollAnimationManager
+                rollAnimationManager,
+                itemNameIndexManager,
+                panelSearchExecutor
         );
         rollAnimationManager.setChanceManPanel(chanceManPanel);
+        tradeableItemsManager.setChanceManPanel(chanceManPanel);
+        itemNameIndexManager.setChanceManPanel(chanceManPanel);
+        chanceManPanel.setTypoTolerant(config.typoTolerantSearch());
+        rollAnimationManager.setWeighting(config.rollWeighting());
+        // unlocking an item can make the items that require it rollable
+        unlockedItemsManager.setUnlockListener(itemId ->
+        {
+            tradeableItemsManager.onItemUnlocked(itemId);
+            lockedItemIndex.onItemUnlocked(itemId);
+        });
 
         BufferedImage icon = ImageUtil.loadImageResource(
                 getClass(), "/net/runelite/client/plugins/chanceman/icon.png"
@@ -165,20 +211,58 @@ public class ChanceManPlugin extends Plugin
         {
             rollAnimationManager.shutdown();
         }
-        if (fileExecutor != null)
-        {
-            fileExecutor.shutdownNow();
-            fileExecutor = null;
-        }
+        rollAuditManager.flush();
+        unlockedItemsManager.flush();
+        rolledItemsManager.flush();
+        drain(unlockedFileExecutor);
+        drain(rolledFileExecutor);
+        drain(universeExecutor);
+        panelSearchExecutor.shutdownNow();
+        unlockedFileExecutor = null;
+        rolledFileExecutor = null;
+        universeExecutor = null;
+        panelSearchExecutor = null;
+        unlockedItemsManager.close();
+        rolledItemsManager.close();
+        rollAuditManager.close();
         dropFetcher.shutdown();
 
         // reset panel/tradeable state
         chanceManPanel = null;
-        allTradeableItems.clear();
+        tradeableItemsManager.reset();
+        tradeableItemsManager.setChanceManPanel(null);
+        itemNameIndexManager.setChanceManPanel(null);
+        itemNameIndexManager.reset();
+        unlockedItemsManager.setUnlockListener(null);
+        lockedItemIndex.clear();
         tradeableItemsInitialized = false;
         accountManager.reset();
     }
 
+    /**
+     * Lets queued writes finish, giving up after {@link #FILE_EXECUTOR_DRAIN_SECONDS}.
+     */
+    private static void drain(ExecutorService executor)
+    {
+        if (executor == null)
+        {
+            return;
+        }
+        executor.shutdown();
+        try
+        {
+            if (!executor.awaitTermination(FILE_EXECUTOR_DRAIN_SECONDS, TimeUnit.SECONDS))
+            {
+                executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Subscribe
     public void onWorldChanged(WorldChanged event)
     {
@@ -188,31 +272,21 @@ public class ChanceManPlugin extends Plugin
 
     /**
      * Refreshes the list of tradeable item IDs based on the current configuration.
+     * Loads from the on-disk cache when it matches; otherwise the item compositions are
+     * scanned incrementally over the following client ticks, see {@link #onClientTick}.
      */
     public void refreshTradeableItems() {
-        clientThread.invokeLater(() -> {
-            allTradeableItems.clear();
-            for (int i = 0; i < 40000; i++) {
-                ItemComposition comp = itemManager.getItemComposition(i);
-                if (comp != null && comp.isTradeable() && !isNotTracked(i)
-                        && !ItemsFilter.isBlocked(i, config)) {
-                    if (config.freeToPlay() && comp.isMembers()) {
-                        continue;
-                    }
-                    if (!ItemsFilter.isPoisonEligible(i, config.requireWeaponPoison(),
-                            unlockedItemsManager.getUnlockedItems())) {
-                        continue;
-                    }
-                    allTradeableItems.add(i);
-                }
-            }
-            rollAnimationManager.setAllTradeableItems(allTradeableItems);
-            if (chanceManPanel != null) {
-                SwingUtilities.invokeLater(() -> chanceManPanel.updatePanel());
-            }
-        });
+        clientThread.invokeLater(() -> tradeableItemsManager.refresh(this::isNotTracked));
     }
 
+    @Subscribe
+    public void onClientTick(ClientTick event)
+    {
+        if (!featuresActive) return;
+        tradeableItemsManager.step();
+        itemNameIndexManager.step();
+        rollAnimationManager.process();
+    }
 
     @Subscribe
     public void onConfigChanged(net.runelite.client.events.ConfigChanged event)
@@ -226,23 +300,126 @@ public class ChanceManPlugin extends Plugin
             case "enableFlatpacks":
             case "enableItemSets":
             case "requireWeaponPoison":
-                refreshTradeableItems();
+                tradeableItemsManager.recompileFilter();
+                clientThread.invokeLater(() -> tradeableItemsManager.reapplyFilter(this::isNotTracked));
+                break;
+            case "rollWeighting":
+                rollAnimationManager.setWeighting(config.rollWeighting());
+                break;
+            case "typoTolerantSearch":
+                chanceManPanel.setTypoTolerant(config.typoTolerantSearch());
                 break;
         }
     }
 
+    @Subscribe
+    public void onTradeableItemsChanged(TradeableItemsChanged event)
+    {
+        if (!featuresActive) return;
+        lockedItemIndex.apply(event, unlockedItemsManager::isUnlocked);
+        // new item definitions can add tradeable items, whose names the panel searches
+        clientThread.invokeLater(itemNameIndexManager::refresh);
+    }
+
     @Subscribe
     private void onAccountChanged(AccountChanged event)
     {
         if (!featuresActive) return;
-        unlockedItemsManager.loadUnlockedItems();
-        rolledItemsManager.loadRolledItems();
+        // the previous account's rolls are journaled and resume when it is loaded again
+        rollAnimationManager.cancelRolls();
+        // persist anything still buffered for the previous account before switching
+        rollAuditManager.flush();
+        unlockedItemsManager.flush();
+        rolledItemsManager.flush();
+        loadAccount();
+    }
+
+    /**
+     * Loads the current account's stores on the file executors, then catches up on anything picked up
+     * in the meantime. If a load fails, the panel says so and the load is retried after a few ticks,
+     * since every feature stays disabled until it succeeds.
+     */
+    private void loadAccount()
+    {
+        loadRetryTicks = 0;
+        // rolling stays gated by accountManager.ready() until all three finish
+        CompletableFuture.allOf(
+                unlockedItemsManager.loadUnlockedItems(),
+                rolledItemsManager.loadRolledItems(),
+                rollAuditManager.loadRollLog()
+        ).whenComplete((ignored, error) ->
+        {
+            if (error != null)
+            {
+                log.error("Could not load the account's items, retrying in {} ticks", LOAD_RETRY_TICKS, error);
+                clientThread.invokeLater(() -> loadRetryTicks = LOAD_RETRY_TICKS);
+            }
+            else if (accountManager.ready())
+            {
+                // catch up on anything picked up while the account was loading
+                clientThread.invokeLater(() ->
+                {
+                    // rolls that were logged before their unlock reached the journal
+                    for (int itemId : rollAuditManager.getUnappliedResults())
+                    {
+                        unlockedItemsManager.unlockItem(itemId);
+                    }
+                    lockedItemIndex.rebuild(tradeableItemsManager.getItems(), unlockedItemsManager::isUnlocked);
+                    verifyRollLog();
+                    rollAnimationManager.resumeRolls(rollAuditManager.getPendingRolls());
+                    itemNameIndexManager.refresh();
+                    ItemContainer inventory = client.getItemContainer(93);
+                    if (inventory != null)
+                    {
+                        rollNewItems(inventory.getItems());
+                    }
+                    // prerequisite eligibility depends on the unlocked set
+                    if (tradeableItemsInitialized)
+                    {
+                        tradeableItemsManager.reapplyFilter(this::isNotTracked);
+                    }
+                });
+            }
+            if (chanceManPanel != null)
+            {
+                chanceManPanel.setLoadFailed(error != null);
+                SwingUtilities.invokeLater(() -> chanceManPanel.updatePanel());
+            }
+        });
         if (chanceManPanel != null)
         {
             SwingUtilities.invokeLater(() -> chanceManPanel.updatePanel());
         }
     }
 
+    /**
+     * Replays the roll log against the current rollable items and reports the result in the log.
+     */
+    private void verifyRollLog()
+    {
+        ItemIdSet universe = tradeableItemsManager.getItems();
+        if (universe.isEmpty())
+        {
+            return;
+        }
+        ItemIdSet unlocked = unlockedItemsManager.getUnlockedItems().getItems();
+        rollAuditManager.verify(universe, unlocked).whenComplete((verification, error) ->
+        {
+            if (error != null)
+            {
+                log.warn("Could not verify the roll log", error);
+            }
+            else if (!verification.isValid())
+            {
+                log.warn("Roll log does not match its seed: {}", verification);
+            }
+            else
+            {
+                log.debug("Roll log verified: {}", verification);
+            }
+        });
+    }
+
     @Subscribe
     public void onGameTick(GameTick event)
     {
@@ -253,7 +430,15 @@ public class ChanceManPlugin extends Plugin
             tradeableItemsInitialized = true;
         }
 
-        rollAnimationManager.process();
+        if (loadRetryTicks > 0 && --loadRetryTicks == 0)
+        {
+            loadAccount();
+        }
+
+        // one journal write per tick, however many items were rolled or unlocked during it
+        rollAuditManager.flush();
+        unlockedItemsManager.flush();
+        rolledItemsManager.flush();
     }
 
     @Subscribe
@@ -272,7 +457,7 @@ public class ChanceManPlugin extends Plugin
         if (children == null || children.length < 2 || children.length % 3 != 0) {
             return;
         }
-        Set<Integer> unlocked = unlockedItemsManager.getUnlockedItems();
+        ItemStateStore.Snapshot unlocked = unlockedItemsManager.getUnlockedItems();
         for (int i = 0; i < children.length; i += 3) {
             int offerItemId = children[i + 2].getItemId();
             if (!unlocked.contains(offerItemId)) {
@@ -325,21 +510,29 @@ public class ChanceManPlugin extends Plugin
 
         if (event.getContainerId() == 93)
         {
-            Set<Integer> processed = new HashSet<>();
-            for (net.runelite.api.Item item : event.getItemContainer().getItems())
+            rollNewItems(event.getItemContainer().getItems());
+        }
+    }
+
+    /**
+     * Queues a roll for every tracked tradeable item in {@code items} that has not been rolled yet.
+     */
+    private void rollNewItems(net.runelite.api.Item[] items)
+    {
+        Set<Integer> processed = new HashSet<>();
+        for (net.runelite.api.Item item : items)
+        {
+            int rawItemId = item.getId();
+            int canonicalId = itemManager.canonicalize(rawItemId);
+            if (!isTradeable(canonicalId) || isNotTracked(canonicalId))
             {
-                int rawItemId = item.getId();
-                int canonicalId = itemManager.canonicalize(rawItemId);
-                if (!isTradeable(canonicalId) || isNotTracked(canonicalId))
-                {
-                    continue;
-                }
-                if (!processed.contains(canonicalId) && !rolledItemsManager.isRolled(canonicalId))
-                {
-                    rollAnimationManager.enqueueRoll(canonicalId);
-                    rolledItemsManager.markRolled(canonicalId);
-                    processed.add(canonicalId);
-                }
+                continue;
+            }
+            if (!processed.contains(canonicalId) && !rolledItemsManager.isRolled(canonicalId))
+            {
+                rollAnimationManager.enqueueRoll(canonicalId);
+                rolledItemsManager.markRolled(canonicalId);
+                processed.add(canonicalId);
             }
         }
     }
@@ -369,7 +562,7 @@ public class ChanceManPlugin extends Plugin
 
     public boolean isInPlay(int itemId)
     {
-        return allTradeableItems.contains(itemId);
+        return tradeableItemsManager.contains(itemId);
     }
 
     public ItemManager getItemManager() { return itemManager; }
@@ -0,0 +1,214 @@
+package com.chanceman;
+
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.util.function.IntFunction;
+
+/**
+ * Grid of item icons over an {@link ItemListModel}, in the same order as the list view.
+ *
+ * The whole grid is one component that paints only the cells inside the clip, so its cost does not
+ * depend on how many items the model holds. Icons come from an {@link ItemIconCache}; a cell whose icon
+ * is still loading shows a placeholder until the load repaints the grid. The icons of the rows just above
+ * and below the viewport are prefetched, so they are usually ready by the time they scroll into view.
+ * Must only be used on the EDT, inside a scroll pane.
+ */
+class ItemGridView extends JComponent implements Scrollable
+{
+    private static final int CELL_WIDTH = 40;
+    private static final int CELL_HEIGHT = 36;
+    private static final int ICON_WIDTH = 36;
+    private static final int ICON_HEIGHT = 32;
+    // rows beyond each edge of the viewport whose icons are loaded ahead of time
+    private static final int PREFETCH_ROWS = 2;
+
+    private static final Color BACKGROUND = new Color(60, 63, 65);
+    private static final Color PLACEHOLDER = new Color(75, 78, 80);
+
+    private final ItemListModel model;
+    private final ItemIconCache icons;
+    private final IntFunction<String> names;
+    // one instance, so a cell painted again while its icon loads does not queue another repaint
+    private final Runnable repaintOnLoad = this::repaint;
+
+    /**
+     * @param names gives the tooltip of an item, or null if its name is not known yet
+     */
+    ItemGridView(ItemListModel model, ItemIconCache icons, IntFunction<String> names)
+    {
+        this.model = model;
+        this.icons = icons;
+        this.names = names;
+        setOpaque(true);
+        // registers with the tooltip manager; the text comes from getToolTipText(MouseEvent)
+        setToolTipText("");
+        model.addListDataListener(new ListDataListener()
+        {
+            @Override
+            public void intervalAdded(ListDataEvent e)
+            {
+                contentsChanged(e);
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e)
+            {
+                contentsChanged(e);
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e)
+            {
+                revalidate();
+                repaint();
+            }
+        });
+    }
+
+    @Override
+    protected void paintComponent(Graphics g)
+    {
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+        {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g.setColor(BACKGROUND);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        int columns = columns();
+        int size = model.getSize();
+        int firstRow = clip.y / CELL_HEIGHT;
+        int lastRow = (clip.y + clip.height - 1) / CELL_HEIGHT;
+        for (int row = firstRow; row <= lastRow; row++)
+        {
+            for (int column = 0; column < columns; column++)
+            {
+                int index = row * columns + column;
+                if (index >= size)
+                {
+                    break;
+                }
+                int x = column * CELL_WIDTH + (CELL_WIDTH - ICON_WIDTH) / 2;
+                int y = row * CELL_HEIGHT + (CELL_HEIGHT - ICON_HEIGHT) / 2;
+                ImageIcon icon = icons.get(model.getItemAt(index), repaintOnLoad);
+                if (icon != null)
+                {
+                    icon.paintIcon(this, g, x, y);
+                }
+                else
+                {
+                    g.setColor(PLACEHOLDER);
+                    g.fillRoundRect(x + 4, y + 4, ICON_WIDTH - 8, ICON_HEIGHT - 8, 6, 6);
+                }
+            }
+        }
+        prefetch(columns, size);
+    }
+
+    private void prefetch(int columns, int size)
+    {
+        Rectangle visible = getVisibleRect();
+        if (visible.isEmpty())
+        {
+            return;
+        }
+        int firstRow = visible.y / CELL_HEIGHT;
+        int lastRow = (visible.y + visible.height - 1) / CELL_HEIGHT;
+        prefetchRows(Math.max(0, firstRow - PREFETCH_ROWS), firstRow - 1, columns, size);
+        prefetchRows(lastRow + 1, lastRow + PREFETCH_ROWS, columns, size);
+    }
+
+    private void prefetchRows(int fromRow, int toRow, int columns, int size)
+    {
+        for (int index = fromRow * columns; index < Math.min(size, (toRow + 1) * columns); index++)
+        {
+            icons.prefetch(model.getItemAt(index));
+        }
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e)
+    {
+        int index = indexAt(e.getX(), e.getY());
+        if (index < 0)
+        {
+            return null;
+        }
+        String name = names.apply(model.getItemAt(index));
+        return name != null ? name : "Loading…";
+    }
+
+    /**
+     * @return the index of the item drawn at the point, or -1 if there is none
+     */
+    private int indexAt(int x, int y)
+    {
+        int columns = columns();
+        int column = x / CELL_WIDTH;
+        if (x < 0 || y < 0 || column >= columns)
+        {
+            return -1;
+        }
+        int index = (y / CELL_HEIGHT) * columns + column;
+        return index < model.getSize() ? index : -1;
+    }
+
+    private int columns()
+    {
+        // the viewport's width, so the preferred height is right before the grid is first laid out
+        int width = getParent() instanceof JViewport ? getParent().getWidth() : getWidth();
+        return Math.max(1, width / CELL_WIDTH);
+    }
+
+    @Override
+    public Dimension getPreferredSize()
+    {
+        int columns = columns();
+        int rows = (model.getSize() + columns - 1) / columns;
+        return new Dimension(columns * CELL_WIDTH, rows * CELL_HEIGHT);
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize()
+    {
+        return new Dimension(250, 300);
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction)
+    {
+        return orientation == SwingConstants.VERTICAL ? CELL_HEIGHT : CELL_WIDTH;
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction)
+    {
+        return orientation == SwingConstants.VERTICAL
+                ? Math.max(CELL_HEIGHT, visibleRect.height - CELL_HEIGHT)
+                : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth()
+    {
+        // the width decides the column count, so it always follows the viewport
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight()
+    {
+        return false;
+    }
+}
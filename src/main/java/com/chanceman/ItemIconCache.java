@@ -0,0 +1,105 @@
+package com.chanceman;
+
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.util.AsyncBufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Item icons for the panel, kept in a least-recently-used cache of bounded size.
+ *
+ * A miss returns null, so the caller can paint a placeholder, and loads the icon in the background:
+ * the image is requested on the client thread and added to the cache on the EDT once it has loaded,
+ * after which the callbacks of everyone who asked for it run, typically to repaint.
+ * Must only be used on the EDT.
+ */
+final class ItemIconCache
+{
+    private final ItemManager itemManager;
+    private final ClientThread clientThread;
+    private final Map<Integer, ImageIcon> icons;
+    // callbacks of the icons being loaded
+    private final Map<Integer, List<Runnable>> loading = new HashMap<>();
+
+    /**
+     * @param capacity the most icons kept; the least recently used one is dropped to make room
+     */
+    ItemIconCache(ItemManager itemManager, ClientThread clientThread, int capacity)
+    {
+        this.itemManager = itemManager;
+        this.clientThread = clientThread;
+        this.icons = new LinkedHashMap<Integer, ImageIcon>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ImageIcon> eldest)
+            {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @param onLoaded run on the EDT once the icon is cached, if it is not already; may be null.
+     *                 Passing the same instance again while the icon loads does not run it twice.
+     * @return the icon, or null while it is loading
+     */
+    ImageIcon get(int itemId, Runnable onLoaded)
+    {
+        ImageIcon icon = icons.get(itemId);
+        if (icon != null)
+        {
+            return icon;
+        }
+        List<Runnable> callbacks = loading.get(itemId);
+        if (callbacks == null)
+        {
+            callbacks = new ArrayList<>(1);
+            loading.put(itemId, callbacks);
+            load(itemId);
+        }
+        if (onLoaded != null && !callbacks.contains(onLoaded))
+        {
+            callbacks.add(onLoaded);
+        }
+        return null;
+    }
+
+    /**
+     * Starts loading the icon if it is neither cached nor loading, without making it more recently used.
+     */
+    void prefetch(int itemId)
+    {
+        if (!icons.containsKey(itemId) && !loading.containsKey(itemId))
+        {
+            loading.put(itemId, new ArrayList<>(1));
+            load(itemId);
+        }
+    }
+
+    private void load(int itemId)
+    {
+        clientThread.invokeLater(() ->
+        {
+            AsyncBufferedImage image = itemManager.getImage(itemId, 1, false);
+            // runs right away if the image is already loaded, else on the client thread once it is
+            image.onLoaded(() -> SwingUtilities.invokeLater(() -> loaded(itemId, new ImageIcon(image))));
+        });
+    }
+
+    private void loaded(int itemId, ImageIcon icon)
+    {
+        icons.put(itemId, icon);
+        List<Runnable> callbacks = loading.remove(itemId);
+        if (callbacks != null)
+        {
+            callbacks.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.chanceman;
+
+import javax.swing.AbstractListModel;
+import java.util.Arrays;
+
+/**
+ * List model of item IDs backed by an int array, newest first.
+ *
+ * The array keeps free room in front of the first item, so {@link #prependAll} is a copy of the new items
+ * and a single {@link #fireIntervalAdded}. {@link #setItems} diffs the new contents against the current
+ * ones and fires one event per run of removed or added items, which for the usual refresh (an item
+ * unlocked, a search narrowed or widened) is a handful of events instead of one per item.
+ * Must only be used on the EDT.
+ */
+class ItemListModel extends AbstractListModel<Integer>
+{
+    // past this many runs of changes a diff is applied as a single replacement
+    private static final int MAX_DIFF_RUNS = 16;
+
+    private int[] buf = new int[16];
+    private int start = buf.length;
+    private int size = 0;
+
+    @Override
+    public int getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public Integer getElementAt(int index)
+    {
+        return getItemAt(index);
+    }
+
+    public int getItemAt(int index)
+    {
+        if (index < 0 || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return buf[start + index];
+    }
+
+    /**
+     * @return the items, newest first
+     */
+    public int[] toIntArray()
+    {
+        return Arrays.copyOfRange(buf, start, start + size);
+    }
+
+    /**
+     * Inserts items in front of the list, so {@code itemIds[0]} becomes the first item.
+     */
+    public void prependAll(int[] itemIds)
+    {
+        int count = itemIds.length;
+        if (count == 0)
+        {
+            return;
+        }
+        ensureFrontRoom(count);
+        start -= count;
+        System.arraycopy(itemIds, 0, buf, start, count);
+        size += count;
+        fireIntervalAdded(this, 0, count - 1);
+    }
+
+    /**
+     * Inserts the items that are not in the list yet in front of it, keeping their order, so an item
+     * that a full update has already shown is not listed twice. Checks the whole list, so this is
+     * linear in its size; it still fires a single event.
+     */
+    public void prependMissing(int[] itemIds)
+    {
+        long[] shown = bitsOf(toIntArray());
+        int[] missing = new int[itemIds.length];
+        int count = 0;
+        for (int itemId : itemIds)
+        {
+            if (!contains(shown, itemId))
+            {
+                missing[count++] = itemId;
+            }
+        }
+        prependAll(Arrays.copyOf(missing, count));
+    }
+
+    /**
+     * Replaces the contents with {@code next}, firing events for the difference only.
+     * The diff is exact when the old and new contents are both ordered subsequences of one list,
+     * as two filterings of the same collection are; otherwise it is still correct, just larger.
+     */
+    public void setItems(int[] next)
+    {
+        int[] old = toIntArray();
+        long[] inNext = bitsOf(next);
+        long[] inOld = bitsOf(old);
+
+        // walk both lists recording runs of {removed ? 1 : 0, index in the list being edited, length}
+        int[][] runs = new int[MAX_DIFF_RUNS][];
+        int runCount = 0;
+        int i = 0;
+        int j = 0;
+        int at = 0;
+        while (i < old.length || j < next.length)
+        {
+            if (i < old.length && j < next.length && old[i] == next[j])
+            {
+                i++;
+                j++;
+                at++;
+                continue;
+            }
+            boolean removed;
+            int length = 0;
+            if (i < old.length && !contains(inNext, old[i]))
+            {
+                removed = true;
+                while (i < old.length && !contains(inNext, old[i]))
+                {
+                    i++;
+                    length++;
+                }
+            }
+            else if (j < next.length && !contains(inOld, next[j]))
+            {
+                removed = false;
+                while (j < next.length && !contains(inOld, next[j]))
+                {
+                    j++;
+                    length++;
+                }
+            }
+            else if (i < old.length)
+            {
+                // kept but out of order: remove it here and add it back where it now belongs
+                removed = true;
+                clear(inOld, old[i]);
+                i++;
+                length = 1;
+            }
+            else
+            {
+                removed = false;
+                j++;
+                length = 1;
+            }
+
+            if (runCount == MAX_DIFF_RUNS)
+            {
+                replace(next);
+                return;
+            }
+            runs[runCount++] = new int[]{removed ? 1 : 0, at, length};
+            if (!removed)
+            {
+                at += length;
+            }
+        }
+
+        // apply the runs in order, so the model matches every event as it is fired;
+        // everything before a run already matches the start of next, so an added run is copied from the same index
+        for (int r = 0; r < runCount; r++)
+        {
+            int index = runs[r][1];
+            int length = runs[r][2];
+            if (runs[r][0] == 1)
+            {
+                System.arraycopy(buf, start + index + length, buf, start + index, size - index - length);
+                size -= length;
+                fireIntervalRemoved(this, index, index + length - 1);
+            }
+            else
+            {
+                insert(index, next, index, length);
+                fireIntervalAdded(this, index, index + length - 1);
+            }
+        }
+    }
+
+    private void insert(int index, int[] source, int from, int length)
+    {
+        if (buf.length - start - size < length)
+        {
+            grow(length);
+        }
+        System.arraycopy(buf, start + index, buf, start + index + length, size - index);
+        System.arraycopy(source, from, buf, start + index, length);
+        size += length;
+    }
+
+    private void replace(int[] next)
+    {
+        int oldSize = size;
+        size = 0;
+        if (oldSize > 0)
+        {
+            fireIntervalRemoved(this, 0, oldSize - 1);
+        }
+        buf = new int[Math.max(16, next.length * 2)];
+        start = buf.length - next.length;
+        System.arraycopy(next, 0, buf, start, next.length);
+        size = next.length;
+        if (size > 0)
+        {
+            fireIntervalAdded(this, 0, size - 1);
+        }
+    }
+
+    private void ensureFrontRoom(int count)
+    {
+        if (start >= count)
+        {
+            return;
+        }
+        int[] grown = new int[Math.max(buf.length * 2, size + count * 2)];
+        int newStart = grown.length - size;
+        System.arraycopy(buf, start, grown, newStart, size);
+        buf = grown;
+        start = newStart;
+    }
+
+    private void grow(int count)
+    {
+        int[] grown = new int[Math.max(buf.length * 2, size + count + 16)];
+        // keep the free room in front, where prepends need it
+        int newStart = grown.length - size - count;
+        System.arraycopy(buf, start, grown, newStart, size);
+        buf = grown;
+        start = newStart;
+    }
+
+    private static long[] bitsOf(int[] itemIds)
+    {
+        int max = -1;
+        for (int itemId : itemIds)
+        {
+            max = Math.max(max, itemId);
+        }
+        long[] bits = new long[(max >> 6) + 1];
+        for (int itemId : itemIds)
+        {
+            if (itemId >= 0)
+            {
+                bits[itemId >> 6] |= 1L << itemId;
+            }
+        }
+        return bits;
+    }
+
+    private static void clear(long[] bits, int itemId)
+    {
+        if (contains(bits, itemId))
+        {
+            bits[itemId >> 6] &= ~(1L << itemId);
+        }
+    }
+
+    private static boolean contains(long[] bits, int itemId)
+    {
+        int word = itemId >> 6;
+        return itemId >= 0 && word < bits.length && (bits[word] & (1L << itemId)) != 0;
+    }
+}
@@ -0,0 +1,195 @@
+package com.chanceman;
+
+import com.chanceman.filters.Flatpacks;
+import com.chanceman.filters.ItemSets;
+import com.chanceman.filters.PoisonWeapons;
+import com.chanceman.managers.ItemIdSet;
+import com.chanceman.managers.ItemNameIndex;
+
+import java.util.Collection;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The panel's filter settings, turned into the sets of items each list shows.
+ *
+ * Every setting is a set of items: whether an item is unlocked, rolled, matches the search, is in the chosen
+ * category or is worth the chosen amount. A list's view is its items ANDed with the sets that are in use and
+ * ANDNOTed with the ones that are excluded, a word of 64 items at a time, so any combination of settings
+ * costs about the same. Immutable; {@code with} methods return a changed copy.
+ */
+final class ItemViewFilter
+{
+    static final ItemViewFilter NONE = new ItemViewFilter(Ownership.ALL, Category.ALL, 0, Integer.MAX_VALUE);
+
+    /**
+     * Which items each list shows, by whether they are both unlocked and rolled.
+     */
+    enum Ownership
+    {
+        ALL,
+        UNLOCKED_NOT_ROLLED,
+        UNLOCKED_AND_ROLLED,
+        ROLLED_NOT_UNLOCKED
+    }
+
+    /**
+     * Groups of items that can be filtered to.
+     */
+    enum Category
+    {
+        ALL("All categories", () -> null),
+        ITEM_SETS("Item sets", () -> setOf(ItemSets.getAllItemSetIds())),
+        FLATPACKS("Flatpacks", () -> setOf(Flatpacks.getAllFlatpackIds())),
+        POISONABLE_WEAPONS("Poisonable weapons", () -> setOf(Stream.concat(
+                PoisonWeapons.getAllBaseWeaponIds().stream(),
+                PoisonWeapons.getVariantRequirements().keySet().stream()))),
+        ;
+
+        private final String name;
+        private final Supplier<ItemIdSet> source;
+        // built on first use; racing threads just build equal sets
+        private ItemIdSet items;
+
+        Category(String name, Supplier<ItemIdSet> source)
+        {
+            this.name = name;
+            this.source = source;
+        }
+
+        /**
+         * @return the items in the category, or null for every item
+         */
+        ItemIdSet getItems()
+        {
+            if (this == ALL)
+            {
+                return null;
+            }
+            ItemIdSet set = items;
+            if (set == null)
+            {
+                set = source.get();
+                items = set;
+            }
+            return set;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    private final Ownership ownership;
+    private final Category category;
+    private final int minValue;
+    private final int maxValue;
+
+    private ItemViewFilter(Ownership ownership, Category category, int minValue, int maxValue)
+    {
+        this.ownership = ownership;
+        this.category = category;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+    }
+
+    Ownership getOwnership()
+    {
+        return ownership;
+    }
+
+    ItemViewFilter withOwnership(Ownership ownership)
+    {
+        return new ItemViewFilter(ownership, category, minValue, maxValue);
+    }
+
+    ItemViewFilter withCategory(Category category)
+    {
+        return new ItemViewFilter(ownership, category, minValue, maxValue);
+    }
+
+    /**
+     * @param minValue the lowest GE price shown
+     * @param maxValue the highest GE price shown, {@link Integer#MAX_VALUE} for no limit
+     */
+    ItemViewFilter withValueRange(int minValue, int maxValue)
+    {
+        return new ItemViewFilter(ownership, category, minValue, maxValue);
+    }
+
+    /**
+     * @param found the items matching the search, or null if there is no search
+     * @return the unlocked items the Unlocked list shows
+     */
+    ItemIdSet unlockedView(ItemIdSet unlocked, ItemIdSet rolled, ItemIdSet found, ItemNameIndex index)
+    {
+        switch (ownership)
+        {
+            case UNLOCKED_NOT_ROLLED:
+                return restrict(unlocked.andNot(rolled), found, index);
+            case UNLOCKED_AND_ROLLED:
+                return restrict(unlocked.and(rolled), found, index);
+            case ROLLED_NOT_UNLOCKED:
+                return ItemIdSet.EMPTY;
+            default:
+                return restrict(unlocked, found, index);
+        }
+    }
+
+    /**
+     * @param found the items matching the search, or null if there is no search
+     * @return the rolled items the Rolled list shows
+     */
+    ItemIdSet rolledView(ItemIdSet unlocked, ItemIdSet rolled, ItemIdSet found, ItemNameIndex index)
+    {
+        switch (ownership)
+        {
+            case UNLOCKED_NOT_ROLLED:
+                return ItemIdSet.EMPTY;
+            case UNLOCKED_AND_ROLLED:
+                return restrict(rolled.and(unlocked), found, index);
+            case ROLLED_NOT_UNLOCKED:
+                return restrict(rolled.andNot(unlocked), found, index);
+            default:
+                return restrict(rolled, found, index);
+        }
+    }
+
+    /**
+     * @return true if unlocking an item can change the Rolled list, or its place in the Unlocked list
+     */
+    boolean dependsOnRolledAndUnlocked()
+    {
+        return ownership == Ownership.UNLOCKED_AND_ROLLED || ownership == Ownership.ROLLED_NOT_UNLOCKED;
+    }
+
+    private ItemIdSet restrict(ItemIdSet items, ItemIdSet found, ItemNameIndex index)
+    {
+        if (found != null)
+        {
+            items = items.and(found);
+        }
+        ItemIdSet inCategory = category.getItems();
+        if (inCategory != null)
+        {
+            items = items.and(inCategory);
+        }
+        if (minValue > 0 || maxValue < Integer.MAX_VALUE)
+        {
+            items = items.and(index.valueRange(minValue, maxValue));
+        }
+        return items;
+    }
+
+    private static ItemIdSet setOf(Collection<Integer> itemIds)
+    {
+        return setOf(itemIds.stream());
+    }
+
+    private static ItemIdSet setOf(Stream<Integer> itemIds)
+    {
+        return ItemIdSet.of(itemIds.mapToInt(Integer::intValue).toArray());
+    }
+}
@@ -1,5 +1,6 @@
 package com.chanceman.account;
 
+import com.chanceman.managers.RollAuditManager;
 import com.chanceman.managers.RolledItemsManager;
 import com.chanceman.managers.UnlockedItemsManager;
 import lombok.Getter;
@@ -32,6 +33,9 @@ public class AccountManager
 	@Inject
 	private RolledItemsManager rolledItemsManager;
 
+	@Inject
+	private RollAuditManager rollAuditManager;
+
 	@Inject
 	private EventBus eventBus;
 
@@ -39,7 +43,14 @@ public class AccountManager
 	@Getter @Setter private volatile String playerName;
 	private boolean nameSet = false;
 
-	public boolean ready() { return hash != -1 && nameSet; }
+	/**
+	 * @return true once the account is known and its unlocked items, rolled items and roll log have finished loading
+	 */
+	public boolean ready()
+	{
+		return hash != -1 && nameSet && unlockedItemsManager.isLoaded() && rolledItemsManager.isLoaded()
+				&& rollAuditManager.isLoaded();
+	}
 
 	public void init()
 	{
@@ -0,0 +1,74 @@
+package com.chanceman.filters;
+
+import com.chanceman.ChanceManConfig;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The blocked items (the static block list, plus flatpacks, item sets and free-to-play trade-only items
+ * when the config excludes them) compiled into a single exclusion bitmap for one config.
+ * The static item lists are only walked once per compile and the config getters are read once,
+ * so checking an item is one bit test.
+ */
+public final class CompiledItemsFilter {
+    private final long[] excluded;
+
+    /**
+     * True if members items are excluded (free-to-play mode). Members status is not known statically,
+     * so callers apply this themselves.
+     */
+    @Getter private final boolean excludeMembers;
+
+    /**
+     * Identifies the set of excluded items, so results derived with this filter can be cached.
+     */
+    @Getter private final int hash;
+
+    private CompiledItemsFilter(long[] excluded, boolean excludeMembers) {
+        this.excluded = excluded;
+        this.excludeMembers = excludeMembers;
+        this.hash = 31 * Arrays.hashCode(excluded) + (excludeMembers ? 1 : 0);
+    }
+
+    /**
+     * Builds the exclusion bitmap for the current config.
+     */
+    public static CompiledItemsFilter compile(ChanceManConfig config) {
+        long[] bits = new long[0];
+        bits = exclude(bits, BlockedItems.getBLOCKED_ITEMS());
+        if (!config.enableFlatpacks()) {
+            bits = exclude(bits, Flatpacks.getAllFlatpackIds());
+        }
+        if (!config.enableItemSets()) {
+            bits = exclude(bits, ItemSets.getAllItemSetIds());
+        }
+        boolean freeToPlay = config.freeToPlay();
+        if (freeToPlay && !config.includeF2PTradeOnlyItems()) {
+            bits = exclude(bits, FreeToPlayBlockedItems.getFreeToPlayTradeOnlyItemIds());
+        }
+        return new CompiledItemsFilter(bits, freeToPlay);
+    }
+
+    /**
+     * @return word {@code index} of the exclusion bitmap, for filtering whole words of a bitset at a time
+     */
+    public long excludedWord(int index) {
+        return index < excluded.length ? excluded[index] : 0L;
+    }
+
+    private static long[] exclude(long[] bits, Set<Integer> itemIds) {
+        for (int itemId : itemIds) {
+            if (itemId < 0) {
+                continue;
+            }
+            int word = itemId >> 6;
+            if (word >= bits.length) {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            bits[word] |= 1L << itemId;
+        }
+        return bits;
+    }
+}
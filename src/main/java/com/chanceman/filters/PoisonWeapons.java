@@ -3,7 +3,9 @@ package com.chanceman.filters;
 import lombok.Getter;
 import net.runelite.api.gameval.ItemID;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -152,78 +154,45 @@ public enum PoisonWeapons {
     }
 
     /**
-     * Returns an unmodifiable set of all base weapon ids from poisonable weapons, excluding poison constants.
+     * Index built once from the constants, so lookups don't scan {@code values()}.
      */
-    public static Set<Integer> getAllBaseWeaponIds() {
-        Set<Integer> ids = new HashSet<>();
-        for (PoisonWeapons weapon : values()) {
-            if (!weapon.name().startsWith("WEAPON_POISON")) {
-                ids.add(weapon.getBaseId());
+    private static final class Index {
+        // poisoned variant id -> {base weapon id, required global poison id}
+        static final Map<Integer, int[]> REQUIREMENTS = new HashMap<>();
+        // every poisonable weapon's base id (not the global poisons)
+        static final Set<Integer> BASE_WEAPON_IDS;
+
+        static {
+            Set<Integer> baseIds = new HashSet<>();
+            for (PoisonWeapons weapon : values()) {
+                if (weapon.isGlobalPoison()) continue;
+                baseIds.add(weapon.getBaseId());
+                REQUIREMENTS.put(weapon.getPoisonId(), new int[]{weapon.getBaseId(), WEAPON_POISON.getBaseId()});
+                REQUIREMENTS.put(weapon.getPoisonPlusId(), new int[]{weapon.getBaseId(), WEAPON_POISON_.getBaseId()});
+                REQUIREMENTS.put(weapon.getPoisonPlusPlusId(), new int[]{weapon.getBaseId(), WEAPON_POISON__.getBaseId()});
             }
+            BASE_WEAPON_IDS = Collections.unmodifiableSet(baseIds);
         }
-        return Collections.unmodifiableSet(ids);
+    }
+
+    private boolean isGlobalPoison() {
+        return this == WEAPON_POISON || this == WEAPON_POISON_ || this == WEAPON_POISON__;
     }
 
     /**
-     * Checks if a given item id is a poisonable weapon variant.
-     *
-     * @param itemId the item id to check.
-     * @return true if it matches any poisonable weapon variant.
+     * Returns an unmodifiable set of all base weapon ids from poisonable weapons, excluding poison constants.
      */
-    public static boolean isPoisonableWeapon(int itemId) {
-        for (PoisonWeapons weapon : values()) {
-            if (weapon.name().startsWith("WEAPON_POISON")) continue;
-            if (weapon.matches(itemId)) {
-                return true;
-            }
-        }
-        return false;
+    public static Set<Integer> getAllBaseWeaponIds() {
+        return Index.BASE_WEAPON_IDS;
     }
 
     /**
-     * Checks if a poisonable weapon variant is eligible.
-     * Base weapons are always eligible.
-     * For poisoned variants:
-     *   - (p) requires WEAPON_POISON,
-     *   - (p+) requires WEAPON_POISON_,
-     *   - (p++) requires WEAPON_POISON__,
-     * to be unlocked along with the base weapon.
-     * @param itemId the item ID to check
-     * @param requireWeaponPoison if true, the corresponding global poison must be unlocked
-     * @param unlockedItems the set of unlocked item IDs
-     * @return true if eligible; false otherwise
+     * Returns every poisoned variant mapped to the items it requires: its base weapon and the matching
+     * global weapon poison. Used to feed these rules into a {@link PrerequisiteGraph}.
+     * The arrays must not be modified.
      */
-    public static boolean isPoisonVariantEligible(int itemId, boolean requireWeaponPoison, Set<Integer> unlockedItems) {
-        PoisonWeapons matchingWeapon = null;
-        for (PoisonWeapons weapon : values()) {
-            if (weapon.name().startsWith("WEAPON_POISON")) continue;
-            if (weapon.matches(itemId)) {
-                matchingWeapon = weapon;
-                break;
-            }
-        }
-        if (matchingWeapon == null) {
-            return true;
-        }
-        // Base weapon is always eligible.
-        if (itemId == matchingWeapon.getBaseId()) {
-            return true;
-        }
-        if (!requireWeaponPoison) {
-            return true;
-        }
-        int requiredGlobalId;
-        if (itemId == matchingWeapon.getPoisonId()) {
-            requiredGlobalId = PoisonWeapons.WEAPON_POISON.getBaseId();
-        } else if (itemId == matchingWeapon.getPoisonPlusId()) {
-            requiredGlobalId = PoisonWeapons.WEAPON_POISON_.getBaseId();
-        } else if (itemId == matchingWeapon.getPoisonPlusPlusId()) {
-            requiredGlobalId = PoisonWeapons.WEAPON_POISON__.getBaseId();
-        } else {
-            return true;
-        }
-        boolean eligible = unlockedItems.contains(matchingWeapon.getBaseId()) && unlockedItems.contains(requiredGlobalId);
-        return eligible;
+    public static Map<Integer, int[]> getVariantRequirements() {
+        return Collections.unmodifiableMap(Index.REQUIREMENTS);
     }
 
 }
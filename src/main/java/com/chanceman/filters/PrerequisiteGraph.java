@@ -0,0 +1,162 @@
+package com.chanceman.filters;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Unlock prerequisites: an item with prerequisites is only rollable once all of them are unlocked.
+ *
+ * Rules come from {@code prerequisites.json} (ornament kits, charged variants and the like) and,
+ * when the weapon poison requirement is enabled, from {@link PoisonWeapons}. Every edge is also
+ * stored in reverse, so an unlock only needs to re-check the items that depend on it.
+ * The graph is immutable; build a new one when the rules or the config change.
+ */
+@Slf4j
+public final class PrerequisiteGraph {
+    private static final String RULES_RESOURCE = "/com/chanceman/prerequisites.json";
+    private static final int[] NONE = new int[0];
+
+    /**
+     * One entry of {@code prerequisites.json}.
+     */
+    public static final class Rule {
+        /**
+         * The gated item.
+         */
+        int item;
+        /**
+         * Display name, only to keep the data file readable.
+         */
+        String name;
+        /**
+         * Items that must all be unlocked before {@link #item} can be rolled.
+         */
+        int[] requires;
+    }
+
+    // item -> prerequisites that must all be unlocked
+    private final Map<Integer, int[]> requirements;
+    // prerequisite -> items that require it
+    private final Map<Integer, int[]> dependents;
+    private final int[] gatedItems;
+
+    private PrerequisiteGraph(Map<Integer, int[]> requirements) {
+        this.requirements = requirements;
+
+        Map<Integer, List<Integer>> reverse = new HashMap<>();
+        for (Map.Entry<Integer, int[]> entry : requirements.entrySet()) {
+            for (int prerequisite : entry.getValue()) {
+                reverse.computeIfAbsent(prerequisite, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        this.dependents = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : reverse.entrySet()) {
+            dependents.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).sorted().toArray());
+        }
+        this.gatedItems = requirements.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * Reads the bundled rules file. Malformed entries are skipped; a missing or unreadable file yields no rules.
+     */
+    public static List<Rule> loadRules(Gson gson) {
+        try (InputStream in = PrerequisiteGraph.class.getResourceAsStream(RULES_RESOURCE)) {
+            if (in == null) {
+                log.warn("Prerequisite rules {} not found", RULES_RESOURCE);
+                return Collections.emptyList();
+            }
+            try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                List<Rule> rules = gson.fromJson(r, new TypeToken<List<Rule>>() {}.getType());
+                if (rules == null) {
+                    return Collections.emptyList();
+                }
+                List<Rule> valid = new ArrayList<>();
+                for (Rule rule : rules) {
+                    if (rule == null || rule.item <= 0 || rule.requires == null || rule.requires.length == 0) {
+                        log.warn("Skipping malformed prerequisite rule for {}", rule == null ? null : rule.name);
+                        continue;
+                    }
+                    valid.add(rule);
+                }
+                return valid;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not load prerequisite rules", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Builds the graph from the data file rules plus, if enabled, the weapon poison rules.
+     * Rules for the same item are merged: all of their prerequisites are required.
+     */
+    public static PrerequisiteGraph build(List<Rule> rules, boolean requireWeaponPoison) {
+        Map<Integer, int[]> requirements = new HashMap<>();
+        for (Rule rule : rules) {
+            merge(requirements, rule.item, rule.requires);
+        }
+        if (requireWeaponPoison) {
+            for (Map.Entry<Integer, int[]> entry : PoisonWeapons.getVariantRequirements().entrySet()) {
+                merge(requirements, entry.getKey(), entry.getValue());
+            }
+        }
+        return new PrerequisiteGraph(requirements);
+    }
+
+    /**
+     * @param isUnlocked tells whether an item is unlocked
+     * @return true if the item has no prerequisites or all of them are unlocked
+     */
+    public boolean isEligible(int itemId, IntPredicate isUnlocked) {
+        int[] required = requirements.get(itemId);
+        if (required == null) {
+            return true;
+        }
+        for (int prerequisite : required) {
+            if (!isUnlocked.test(prerequisite)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the items whose eligibility may change when {@code itemId} is unlocked, ascending.
+     *         The array must not be modified.
+     */
+    public int[] getDependents(int itemId) {
+        return dependents.getOrDefault(itemId, NONE);
+    }
+
+    /**
+     * @return every item that has prerequisites, ascending. The array must not be modified.
+     */
+    public int[] getGatedItems() {
+        return gatedItems;
+    }
+
+    private static void merge(Map<Integer, int[]> requirements, int itemId, int[] prerequisites) {
+        int[] existing = requirements.get(itemId);
+        if (existing == null) {
+            requirements.put(itemId, prerequisites.clone());
+            return;
+        }
+        int[] merged = Arrays.copyOf(existing, existing.length + prerequisites.length);
+        System.arraycopy(prerequisites, 0, merged, existing.length, prerequisites.length);
+        requirements.put(itemId, Arrays.stream(merged).distinct().toArray());
+    }
+}
@@ -0,0 +1,116 @@
+package com.chanceman.managers;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Walker's alias table (Vose's construction) for drawing items with probability proportional to
+ * their weight. Building is linear in the number of items, each draw is constant time.
+ */
+final class AliasTable
+{
+    private final int[] items;
+    private final double[] probability;
+    private final int[] alias;
+    private final double totalWeight;
+
+    /**
+     * @param items   the items to draw from; not copied
+     * @param weights one non-negative weight per item. If they are all 0 every item is equally likely.
+     * @param n       how many entries of {@code items} and {@code weights} to use
+     */
+    AliasTable(int[] items, double[] weights, int n)
+    {
+        this.items = items;
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        double total = 0;
+        for (int i = 0; i < n; i++)
+        {
+            total += weights[i];
+        }
+        this.totalWeight = total;
+
+        double[] scaled = new double[n];
+        for (int i = 0; i < n; i++)
+        {
+            scaled[i] = total > 0 ? weights[i] * n / total : 1.0;
+        }
+
+        // indices with a scaled weight below and at or above the average
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (scaled[i] < 1.0)
+            {
+                small[smallCount++] = i;
+            }
+            else
+            {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0)
+        {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0)
+            {
+                small[smallCount++] = more;
+            }
+            else
+            {
+                large[largeCount++] = more;
+            }
+        }
+        // whatever is left is 1 up to rounding error
+        while (largeCount > 0)
+        {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0)
+        {
+            probability[small[--smallCount]] = 1.0;
+        }
+    }
+
+    /**
+     * @return a random item, or -1 if the table is empty
+     */
+    int sample(Random random)
+    {
+        int n = probability.length;
+        return n == 0 ? -1 : pick(random.nextInt(n), random.nextDouble());
+    }
+
+    /**
+     * @return a random item, or -1 if the table is empty
+     */
+    int sample(SplittableRandom random)
+    {
+        int n = probability.length;
+        return n == 0 ? -1 : pick(random.nextInt(n), random.nextDouble());
+    }
+
+    private int pick(int column, double coin)
+    {
+        return coin < probability[column] ? items[column] : items[alias[column]];
+    }
+
+    int size()
+    {
+        return probability.length;
+    }
+
+    double getTotalWeight()
+    {
+        return totalWeight;
+    }
+}
@@ -0,0 +1,203 @@
+package com.chanceman.managers;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of item IDs backed by a bitset. Iterates in ascending order.
+ * Unlike {@link ItemStateStore.Snapshot} it keeps no insertion order, which makes it cheap to
+ * derive one set from another a word at a time.
+ */
+public final class ItemIdSet extends AbstractSet<Integer>
+{
+    public static final ItemIdSet EMPTY = new ItemIdSet(new long[0]);
+
+    private final long[] bits;
+    private final int size;
+
+    private ItemIdSet(long[] bits)
+    {
+        this.bits = bits;
+        int count = 0;
+        for (long word : bits)
+        {
+            count += Long.bitCount(word);
+        }
+        this.size = count;
+    }
+
+    /**
+     * @return a set holding the non-negative IDs in {@code itemIds}
+     */
+    public static ItemIdSet of(int[] itemIds)
+    {
+        long[] bits = new long[0];
+        for (int itemId : itemIds)
+        {
+            if (itemId < 0)
+            {
+                continue;
+            }
+            int word = itemId >> 6;
+            if (word >= bits.length)
+            {
+                bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+            }
+            bits[word] |= 1L << itemId;
+        }
+        return new ItemIdSet(bits);
+    }
+
+    /**
+     * Wraps {@code bits} without copying; the caller must not modify the array afterwards.
+     */
+    static ItemIdSet wrap(long[] bits)
+    {
+        return new ItemIdSet(bits);
+    }
+
+    public boolean contains(int itemId)
+    {
+        int word = itemId >> 6;
+        return itemId >= 0 && word < bits.length && (bits[word] & (1L << itemId)) != 0;
+    }
+
+    @Override
+    public boolean contains(Object o)
+    {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return the number of 64-bit words in the bitset
+     */
+    public int words()
+    {
+        return bits.length;
+    }
+
+    /**
+     * @return word {@code index} of the bitset, 0 past the end
+     */
+    public long word(int index)
+    {
+        return index < bits.length ? bits[index] : 0L;
+    }
+
+    /**
+     * @return true if this set holds exactly the items whose bits are set in {@code other}
+     */
+    public boolean sameItems(long[] other)
+    {
+        int words = Math.max(bits.length, other.length);
+        for (int w = 0; w < words; w++)
+        {
+            if (word(w) != (w < other.length ? other[w] : 0L))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the items in both this set and {@code other}
+     */
+    public ItemIdSet and(ItemIdSet other)
+    {
+        long[] out = new long[Math.min(bits.length, other.bits.length)];
+        for (int w = 0; w < out.length; w++)
+        {
+            out[w] = bits[w] & other.bits[w];
+        }
+        return new ItemIdSet(out);
+    }
+
+    /**
+     * @return the items in this set that are not in {@code other}
+     */
+    public ItemIdSet andNot(ItemIdSet other)
+    {
+        long[] out = new long[bits.length];
+        for (int w = 0; w < out.length; w++)
+        {
+            out[w] = bits[w] & ~other.word(w);
+        }
+        return new ItemIdSet(out);
+    }
+
+    /**
+     * @return a mutable copy of the bitset, at least {@code minWords} long
+     */
+    public long[] copyBits(int minWords)
+    {
+        return Arrays.copyOf(bits, Math.max(bits.length, minWords));
+    }
+
+    /**
+     * @return the item IDs in ascending order
+     */
+    public int[] toIntArray()
+    {
+        return difference(this, EMPTY);
+    }
+
+    /**
+     * @return the IDs in {@code a} that are not in {@code b}, ascending
+     */
+    public static int[] difference(ItemIdSet a, ItemIdSet b)
+    {
+        int[] out = new int[a.size];
+        int n = 0;
+        for (int w = 0; w < a.bits.length; w++)
+        {
+            long word = a.bits[w] & ~b.word(w);
+            while (word != 0)
+            {
+                out[n++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    @Override
+    public Iterator<Integer> iterator()
+    {
+        return new Iterator<Integer>()
+        {
+            private int wordIndex = 0;
+            private long word = bits.length > 0 ? bits[0] : 0L;
+
+            @Override
+            public boolean hasNext()
+            {
+                while (word == 0 && wordIndex + 1 < bits.length)
+                {
+                    word = bits[++wordIndex];
+                }
+                return word != 0;
+            }
+
+            @Override
+            public Integer next()
+            {
+                if (!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                int itemId = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return itemId;
+            }
+        };
+    }
+}
@@ -0,0 +1,410 @@
+package com.chanceman.managers;
+
+import java.util.Arrays;
+
+/**
+ * Immutable item names and GE prices for a set of items, held in dense arrays sorted by item ID together with
+ * a lowercased copy of the names, so the panel can filter by name or value on any thread without touching
+ * item compositions.
+ *
+ * Substring searches go through a trigram index: the items whose name contains every trigram of the query
+ * are found by intersecting their postings lists, and only those names are compared with the query.
+ * The index is built on the first search, on the searching thread.
+ *
+ * A search with typo tolerance that finds no exact match falls back to names containing the query with up
+ * to {@link #maxTypos} edits. By the q-gram lemma such a name still shares all but {@code 3 * typos} of the
+ * query's trigrams, so counting shared trigrams narrows the candidates before the edit distance is checked.
+ */
+public final class ItemNameIndex
+{
+    public static final ItemNameIndex EMPTY =
+            new ItemNameIndex(ItemIdSet.EMPTY, new int[0], new String[0], new int[0]);
+
+    // a trigram takes 3 * 14 bits of a posting key, the slot the remaining low bits
+    private static final int CHAR_BITS = 14;
+    private static final int SLOT_BITS = 21;
+
+    private final ItemIdSet items;
+    private final int[] ids;
+    private final String[] names;
+    private final String[] lowerNames;
+    private final int[] prices;
+    private volatile Trigrams trigrams;
+    // the last value range asked for, which the panel asks for again on every refresh
+    private volatile ValueRange lastRange;
+
+    /**
+     * @param items the indexed items
+     * @param ids   the same items in ascending order; not copied
+     * @param names  the name of each item, or null if it has none; not copied
+     * @param prices the GE price of each item; not copied
+     */
+    ItemNameIndex(ItemIdSet items, int[] ids, String[] names, int[] prices)
+    {
+        this.items = items;
+        this.ids = ids;
+        this.names = names;
+        this.prices = prices;
+        this.lowerNames = new String[names.length];
+        for (int i = 0; i < names.length; i++)
+        {
+            lowerNames[i] = names[i] != null ? names[i].toLowerCase() : null;
+        }
+    }
+
+    /**
+     * @return the indexed items
+     */
+    public ItemIdSet getItems()
+    {
+        return items;
+    }
+
+    public int size()
+    {
+        return ids.length;
+    }
+
+    /**
+     * @return the item's name, or null if it is not indexed or has none
+     */
+    public String getName(int itemId)
+    {
+        int slot = Arrays.binarySearch(ids, itemId);
+        return slot >= 0 ? names[slot] : null;
+    }
+
+    /**
+     * @return the items whose GE price is at least {@code min} and at most {@code max}
+     */
+    public ItemIdSet valueRange(int min, int max)
+    {
+        ValueRange range = lastRange;
+        if (range != null && range.min == min && range.max == max)
+        {
+            return range.items;
+        }
+        long[] bits = new long[items.words()];
+        for (int slot = 0; slot < ids.length; slot++)
+        {
+            if (prices[slot] >= min && prices[slot] <= max)
+            {
+                set(bits, ids[slot]);
+            }
+        }
+        range = new ValueRange(min, max, ItemIdSet.wrap(bits));
+        lastRange = range;
+        return range.items;
+    }
+
+    /**
+     * Finds the items whose name contains {@code query}. If there are none and {@code typoTolerant} is set,
+     * finds the items whose name contains the query with at most {@link #maxTypos} insertions, deletions or
+     * substitutions instead.
+     *
+     * @param query a lowercased, non-empty search string
+     * @return the matching items
+     */
+    public ItemIdSet search(String query, boolean typoTolerant)
+    {
+        long[] bits = new long[items.words()];
+        int found = query.length() < 3 ? scan(query, bits) : exact(query, bits);
+        int typos = maxTypos(query.length());
+        if (found == 0 && typoTolerant && typos > 0)
+        {
+            approximate(query, typos, bits);
+        }
+        return ItemIdSet.wrap(bits);
+    }
+
+    /**
+     * @return how many edits a typo-tolerant search allows for a query of {@code length} characters;
+     *         none for short queries, where almost every name would be within reach
+     */
+    public static int maxTypos(int length)
+    {
+        return length >= 12 ? 2 : length >= 6 ? 1 : 0;
+    }
+
+    private int scan(String query, long[] bits)
+    {
+        int found = 0;
+        for (int slot = 0; slot < ids.length; slot++)
+        {
+            if (lowerNames[slot] != null && lowerNames[slot].contains(query))
+            {
+                set(bits, ids[slot]);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private int exact(String query, long[] bits)
+    {
+        Trigrams index = getTrigrams();
+        long[] grams = grams(query);
+        // intersect the postings lists, shortest first
+        int[][] lists = new int[grams.length][];
+        for (int g = 0; g < grams.length; g++)
+        {
+            lists[g] = index.postings(grams[g]);
+            if (lists[g].length == 0)
+            {
+                return 0;
+            }
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+        int[] candidates = lists[0];
+        int count = candidates.length;
+        for (int g = 1; g < lists.length && count > 0; g++)
+        {
+            count = intersect(candidates, count, lists[g]);
+        }
+
+        int found = 0;
+        for (int c = 0; c < count; c++)
+        {
+            int slot = candidates[c];
+            // the trigrams only say the name may contain the query
+            if (lowerNames[slot].contains(query))
+            {
+                set(bits, ids[slot]);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private void approximate(String query, int typos, long[] bits)
+    {
+        Trigrams index = getTrigrams();
+        long[] grams = grams(query);
+        // names sharing no trigram at all with the query are not offered as near misses
+        int required = Math.max(1, grams.length - 3 * typos);
+        int minLength = query.length() - typos;
+        int[] shared = new int[ids.length];
+        for (long gram : grams)
+        {
+            for (int slot : index.postings(gram))
+            {
+                shared[slot]++;
+            }
+        }
+        for (int slot = 0; slot < ids.length; slot++)
+        {
+            if (shared[slot] >= required && lowerNames[slot].length() >= minLength
+                    && withinDistance(query, lowerNames[slot], typos))
+            {
+                set(bits, ids[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return true if some substring of {@code text} is within {@code maxDistance} edits of {@code pattern}
+     */
+    static boolean withinDistance(String pattern, String text, int maxDistance)
+    {
+        int m = pattern.length();
+        if (m <= maxDistance)
+        {
+            return true;
+        }
+        // column of the edit distance table for the text read so far; a match may start anywhere in the text
+        int[] column = new int[m + 1];
+        for (int i = 0; i <= m; i++)
+        {
+            column[i] = i;
+        }
+        // rows past this one are all over the limit, so they are not worth computing (Ukkonen's cutoff)
+        int last = maxDistance;
+        for (int j = 0; j < text.length(); j++)
+        {
+            char c = text.charAt(j);
+            int diagonal = 0;
+            int rows = Math.min(m, last + 1);
+            for (int i = 1; i <= rows; i++)
+            {
+                int above = column[i];
+                int cost = pattern.charAt(i - 1) == c ? 0 : 1;
+                column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+            last = rows;
+            while (column[last] > maxDistance)
+            {
+                last--;
+            }
+            if (last == m)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Trigrams getTrigrams()
+    {
+        Trigrams index = trigrams;
+        if (index == null)
+        {
+            synchronized (this)
+            {
+                index = trigrams;
+                if (index == null)
+                {
+                    index = new Trigrams(lowerNames);
+                    trigrams = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the distinct trigrams of {@code text}, packed as in {@link #gram}
+     */
+    private static long[] grams(String text)
+    {
+        int n = Math.max(0, text.length() - 2);
+        long[] grams = new long[n];
+        for (int i = 0; i < n; i++)
+        {
+            grams[i] = gram(text, i);
+        }
+        Arrays.sort(grams);
+        int distinct = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (distinct == 0 || grams[i] != grams[distinct - 1])
+            {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    /**
+     * @return the trigram at {@code i}, with each character folded into {@value #CHAR_BITS} bits;
+     *         rare characters can collide, which the final comparison with the name sorts out
+     */
+    private static long gram(String text, int i)
+    {
+        long mask = (1L << CHAR_BITS) - 1;
+        return ((text.charAt(i) & mask) << (2 * CHAR_BITS))
+                | ((text.charAt(i + 1) & mask) << CHAR_BITS)
+                | (text.charAt(i + 2) & mask);
+    }
+
+    /**
+     * Keeps the entries of {@code candidates[0..count)} that are also in {@code list}; both ascending.
+     *
+     * @return the number of entries kept
+     */
+    private static int intersect(int[] candidates, int count, int[] list)
+    {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.length; i++)
+        {
+            int slot = candidates[i];
+            while (j < list.length && list[j] < slot)
+            {
+                j++;
+            }
+            if (j < list.length && list[j] == slot)
+            {
+                candidates[kept++] = slot;
+            }
+        }
+        return kept;
+    }
+
+    private static void set(long[] bits, int itemId)
+    {
+        bits[itemId >> 6] |= 1L << itemId;
+    }
+
+    private static final class ValueRange
+    {
+        private final int min;
+        private final int max;
+        private final ItemIdSet items;
+
+        ValueRange(int min, int max, ItemIdSet items)
+        {
+            this.min = min;
+            this.max = max;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Postings lists of the slots whose name contains each trigram, in one sorted key array and one
+     * array of slots, so a lookup is a binary search.
+     */
+    private static final class Trigrams
+    {
+        private final long[] keys;
+        private final int[] starts;
+        private final int[] slots;
+
+        Trigrams(String[] lowerNames)
+        {
+            // one (trigram, slot) pair per trigram occurrence, packed so sorting groups them by trigram
+            int total = 0;
+            for (String name : lowerNames)
+            {
+                total += name != null ? Math.max(0, name.length() - 2) : 0;
+            }
+            long[] pairs = new long[total];
+            int n = 0;
+            for (int slot = 0; slot < lowerNames.length; slot++)
+            {
+                String name = lowerNames[slot];
+                for (int i = 0; name != null && i + 2 < name.length(); i++)
+                {
+                    pairs[n++] = (gram(name, i) << SLOT_BITS) | slot;
+                }
+            }
+            Arrays.sort(pairs);
+
+            long slotMask = (1L << SLOT_BITS) - 1;
+            long[] keyBuf = new long[n];
+            int[] startBuf = new int[n + 1];
+            int[] slotBuf = new int[n];
+            int keyCount = 0;
+            int slotCount = 0;
+            for (int p = 0; p < n; p++)
+            {
+                if (p > 0 && pairs[p] == pairs[p - 1])
+                {
+                    // the same trigram twice in one name
+                    continue;
+                }
+                long key = pairs[p] >>> SLOT_BITS;
+                if (keyCount == 0 || keyBuf[keyCount - 1] != key)
+                {
+                    keyBuf[keyCount] = key;
+                    startBuf[keyCount] = slotCount;
+                    keyCount++;
+                }
+                slotBuf[slotCount++] = (int) (pairs[p] & slotMask);
+            }
+            startBuf[keyCount] = slotCount;
+            this.keys = Arrays.copyOf(keyBuf, keyCount);
+            this.starts = Arrays.copyOf(startBuf, keyCount + 1);
+            this.slots = Arrays.copyOf(slotBuf, slotCount);
+        }
+
+        /**
+         * @return the slots whose name contains {@code gram}, ascending
+         */
+        int[] postings(long gram)
+        {
+            int k = Arrays.binarySearch(keys, gram);
+            return k < 0 ? new int[0] : Arrays.copyOfRange(slots, starts[k], starts[k + 1]);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.chanceman.managers;
+
+import com.chanceman.ChanceManPanel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ItemComposition;
+import net.runelite.client.game.ItemManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.swing.SwingUtilities;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the {@link ItemNameIndex} of every tradeable, unlocked and rolled item.
+ * Names and prices are read through item compositions, which is only allowed on the client thread, so like the
+ * universe scan in {@link TradeableItemsManager} the index is built in small steps over several client ticks.
+ * It is only rebuilt when the set of items changes, i.e. for a new game revision or account.
+ */
+@Slf4j
+@Singleton
+public class ItemNameIndexManager
+{
+    private static final long STEP_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // check the clock once per this many items
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    @Inject private ItemManager itemManager;
+    @Inject private TradeableItemsManager tradeableItemsManager;
+    @Inject private UnlockedItemsManager unlockedItemsManager;
+    @Inject private RolledItemsManager rolledItemsManager;
+    @Setter private ChanceManPanel chanceManPanel;
+
+    /**
+     * The last fully built index. Never modified once published.
+     */
+    @Getter private volatile ItemNameIndex index = ItemNameIndex.EMPTY;
+
+    // the build in progress, client thread only
+    private ItemIdSet building;
+    private int[] ids;
+    private String[] names;
+    private int[] prices;
+    private int next;
+    private long startedAt;
+
+    /**
+     * Starts indexing the current tradeable, unlocked and rolled items, unless they are already indexed
+     * or being indexed. Must be called on the client thread.
+     */
+    public void refresh()
+    {
+        long[] bits = tradeableItemsManager.getTradeableItems().copyBits(0);
+        bits = addAll(bits, unlockedItemsManager.getUnlockedItems().getItems());
+        bits = addAll(bits, rolledItemsManager.getRolledItems().getItems());
+        ItemIdSet target = building != null ? building : index.getItems();
+        if (target.sameItems(bits))
+        {
+            return;
+        }
+        building = ItemIdSet.wrap(bits);
+        ids = building.toIntArray();
+        names = new String[ids.length];
+        prices = new int[ids.length];
+        next = 0;
+        startedAt = System.nanoTime();
+    }
+
+    /**
+     * Reads the next names within the per-step time budget, if a build is running.
+     * Must be called on the client thread.
+     */
+    public void step()
+    {
+        if (building == null)
+        {
+            return;
+        }
+
+        long deadline = System.nanoTime() + STEP_BUDGET_NANOS;
+        while (next < ids.length)
+        {
+            int i = next++;
+            ItemComposition comp = itemManager.getItemComposition(ids[i]);
+            names[i] = comp != null ? comp.getName() : null;
+            prices[i] = itemManager.getItemPrice(ids[i]);
+            if (next % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline)
+            {
+                break;
+            }
+        }
+        if (next < ids.length)
+        {
+            return;
+        }
+
+        index = new ItemNameIndex(building, ids, names, prices);
+        log.debug("Indexed {} item names in {} ms", ids.length,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        building = null;
+        ids = null;
+        names = null;
+        prices = null;
+        ChanceManPanel panel = chanceManPanel;
+        if (panel != null)
+        {
+            SwingUtilities.invokeLater(panel::updatePanel);
+        }
+    }
+
+    /**
+     * Cancels any build and forgets the index. Call once {@link #step} is no longer being driven.
+     */
+    public void reset()
+    {
+        building = null;
+        ids = null;
+        names = null;
+        prices = null;
+        index = ItemNameIndex.EMPTY;
+    }
+
+    private static long[] addAll(long[] bits, ItemIdSet items)
+    {
+        if (items.words() > bits.length)
+        {
+            bits = Arrays.copyOf(bits, items.words());
+        }
+        for (int w = 0; w < items.words(); w++)
+        {
+            bits[w] |= items.word(w);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,245 @@
+package com.chanceman.managers;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of item IDs backed by a primitive bitset plus an insertion-order int array.
+ * Writers are serialized and publish an immutable {@link Snapshot}; readers just
+ * read the volatile snapshot, so {@link #contains(int)} is a lock-free bit test with no boxing.
+ */
+public class ItemStateStore
+{
+    private static final Snapshot EMPTY = new Snapshot(new long[0], new int[0], 0);
+
+    private volatile Snapshot current = EMPTY;
+
+    /**
+     * @return true if the item ID is in the set
+     */
+    public boolean contains(int itemId)
+    {
+        return current.contains(itemId);
+    }
+
+    /**
+     * @return the number of item IDs in the set
+     */
+    public int size()
+    {
+        return current.size;
+    }
+
+    /**
+     * @return an immutable view of the set as of this call, iterating in insertion order
+     */
+    public Snapshot snapshot()
+    {
+        return current;
+    }
+
+    /**
+     * Adds an item ID and publishes a new snapshot.
+     *
+     * @return true if the ID was not already present
+     */
+    public synchronized boolean add(int itemId)
+    {
+        Snapshot s = current;
+        if (itemId < 0 || s.contains(itemId))
+        {
+            return false;
+        }
+
+        long[] bits = Arrays.copyOf(s.bits, Math.max(s.bits.length, (itemId >> 6) + 1));
+        bits[itemId >> 6] |= 1L << itemId;
+
+        // The order array is only ever appended to past the published size,
+        // so older snapshots can keep sharing it.
+        int[] order = s.order;
+        if (s.size == order.length)
+        {
+            order = Arrays.copyOf(order, Math.max(16, order.length * 2));
+        }
+        order[s.size] = itemId;
+
+        current = new Snapshot(bits, order, s.size + 1);
+        return true;
+    }
+
+    /**
+     * Adds every ID in {@code itemIds} and publishes a single new snapshot.
+     */
+    public synchronized void addAll(int[] itemIds)
+    {
+        Snapshot s = current;
+        long[] bits = s.bits.clone();
+        int[] order = Arrays.copyOf(s.order, Math.max(16, s.size + itemIds.length));
+        int size = s.size;
+        for (int itemId : itemIds)
+        {
+            if (itemId < 0)
+            {
+                continue;
+            }
+            int word = itemId >> 6;
+            if (word >= bits.length)
+            {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            if ((bits[word] & (1L << itemId)) != 0)
+            {
+                continue;
+            }
+            bits[word] |= 1L << itemId;
+            order[size++] = itemId;
+        }
+        current = new Snapshot(bits, order, size);
+    }
+
+    /**
+     * Removes every ID in {@code itemIds} and publishes a single new snapshot.
+     * The remaining IDs are copied into a new order array, so this is linear in the size of the set.
+     *
+     * @return true if any of the IDs was present
+     */
+    public synchronized boolean removeAll(int[] itemIds)
+    {
+        Snapshot s = current;
+        long[] bits = s.bits.clone();
+        boolean removed = false;
+        for (int itemId : itemIds)
+        {
+            if (s.contains(itemId))
+            {
+                bits[itemId >> 6] &= ~(1L << itemId);
+                removed = true;
+            }
+        }
+        if (!removed)
+        {
+            return false;
+        }
+
+        int[] order = new int[Math.max(16, s.size)];
+        int size = 0;
+        for (int i = 0; i < s.size; i++)
+        {
+            int itemId = s.order[i];
+            if ((bits[itemId >> 6] & (1L << itemId)) != 0)
+            {
+                order[size++] = itemId;
+            }
+        }
+        current = new Snapshot(bits, order, size);
+        return true;
+    }
+
+    /**
+     * Removes every ID.
+     */
+    public synchronized void clear()
+    {
+        current = EMPTY;
+    }
+
+    /**
+     * Immutable state of an {@link ItemStateStore}. Iterates in insertion order.
+     */
+    public static final class Snapshot extends AbstractSet<Integer>
+    {
+        private final long[] bits;
+        private final int[] order;
+        private final int size;
+        // derived on first use; racing threads just build equal sets
+        private ItemIdSet items;
+
+        private Snapshot(long[] bits, int[] order, int size)
+        {
+            this.bits = bits;
+            this.order = order;
+            this.size = size;
+        }
+
+        public boolean contains(int itemId)
+        {
+            int word = itemId >> 6;
+            return itemId >= 0 && word < bits.length && (bits[word] & (1L << itemId)) != 0;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return o instanceof Integer && contains((int) (Integer) o);
+        }
+
+        @Override
+        public int size()
+        {
+            return size;
+        }
+
+        /**
+         * @param index position in insertion order, 0 being the oldest
+         * @return the item ID added at that position
+         */
+        public int get(int index)
+        {
+            if (index < 0 || index >= size)
+            {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return order[index];
+        }
+
+        /**
+         * @return the same items as a bitset-only set, for combining with other sets a word at a time
+         */
+        public ItemIdSet getItems()
+        {
+            ItemIdSet set = items;
+            if (set == null)
+            {
+                // the bits are never modified once published, so they can be shared
+                set = ItemIdSet.wrap(bits);
+                items = set;
+            }
+            return set;
+        }
+
+        /**
+         * @return the item IDs in insertion order, oldest first
+         */
+        public int[] toIntArray()
+        {
+            return Arrays.copyOf(order, size);
+        }
+
+        @Override
+        public Iterator<Integer> iterator()
+        {
+            return new Iterator<Integer>()
+            {
+                private int next = 0;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return next < size;
+                }
+
+                @Override
+                public Integer next()
+                {
+                    if (next >= size)
+                    {
+                        throw new NoSuchElementException();
+                    }
+                    return order[next++];
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package com.chanceman.managers;
+
+import com.chanceman.persistence.RollAuditLog;
+
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * The rollable items that are still locked, kept in a dense array so a uniformly random one can be
+ * picked in constant time.
+ *
+ * Each item's slot in the array is stored in a position table indexed by item ID. Unlocking an item
+ * moves the last item into its slot; newly rollable items are appended. Every update is idempotent,
+ * so a change that was already picked up by {@link #rebuild} can safely be applied again.
+ *
+ * With a weigher set, draws go through an {@link AliasTable} instead. The table is built lazily on the
+ * next draw after items were added. Unlocked items are left in it and rejected when drawn; once they
+ * make up a quarter of its weight the table is rebuilt, so draws stay constant time on average.
+ *
+ * Those draws only fill the reel. The item a roll unlocks comes from {@link #draw}, which is reproducible
+ * from the account's roll stream ({@link RollRandom}). A uniform roll picks the locked item of a given rank,
+ * so the items are also kept in ascending order: as a bitset, plus a Fenwick tree over the number of items
+ * in each of its words, which finds the word holding a rank in logarithmic time. The
+ * {@link RollRandom#itemHash hash} of the locked items is kept up to date as well.
+ */
+@Singleton
+public class LockedItemIndex
+{
+    // draws of unlocked items to reject before rebuilding the alias table
+    private static final int MAX_REJECTED_DRAWS = 32;
+
+    private int[] items = new int[0];
+    // item ID -> slot in items + 1, 0 if absent
+    private int[] positions = new int[0];
+    private int size;
+    private long hash;
+    // the same items in ascending order, and a Fenwick tree (1-based) over the bit count of each word
+    private long[] bits = new long[0];
+    private int[] wordCounts = new int[1];
+
+    private IntToDoubleFunction weigher;
+    // null until the next weighted draw after a change that it cannot absorb
+    private AliasTable table;
+    // weight of the table's items that have been unlocked since it was built
+    private double staleWeight;
+
+    /**
+     * Replaces the contents with the items in {@code universe} that are not unlocked.
+     */
+    public synchronized void rebuild(ItemIdSet universe, IntPredicate isUnlocked)
+    {
+        items = new int[universe.size()];
+        positions = new int[universe.words() << 6];
+        bits = new long[universe.words()];
+        size = 0;
+        hash = 0;
+        table = null;
+        for (int itemId : universe)
+        {
+            if (!isUnlocked.test(itemId))
+            {
+                items[size++] = itemId;
+                positions[itemId] = size;
+                bits[itemId >> 6] |= 1L << itemId;
+                hash += RollRandom.itemHash(itemId);
+            }
+        }
+        buildWordCounts();
+    }
+
+    /**
+     * Applies a change of the rollable items: removed items are dropped, added ones are appended unless unlocked.
+     */
+    public synchronized void apply(TradeableItemsChanged event, IntPredicate isUnlocked)
+    {
+        for (int itemId : event.getRemoved())
+        {
+            remove(itemId);
+        }
+        for (int itemId : event.getAdded())
+        {
+            if (!isUnlocked.test(itemId))
+            {
+                add(itemId);
+            }
+        }
+    }
+
+    /**
+     * Drops an item that was just unlocked.
+     */
+    public synchronized void onItemUnlocked(int itemId)
+    {
+        remove(itemId);
+    }
+
+    /**
+     * Sets how likely each item is to be drawn.
+     *
+     * @param weigher gives an item's relative weight; null draws uniformly
+     */
+    public synchronized void setWeigher(IntToDoubleFunction weigher)
+    {
+        this.weigher = weigher;
+        table = null;
+    }
+
+    /**
+     * @return a random locked item, drawn by weight if a weigher is set, or -1 if every rollable item is unlocked
+     */
+    public synchronized int sample()
+    {
+        if (size == 0)
+        {
+            return -1;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (weigher == null)
+        {
+            return items[random.nextInt(size)];
+        }
+        refreshTable();
+        for (int attempt = 0; attempt < MAX_REJECTED_DRAWS; attempt++)
+        {
+            int itemId = table.sample(random);
+            if (contains(itemId))
+            {
+                return itemId;
+            }
+        }
+        // only reachable if the stale items carry almost all of the weight, e.g. all-zero weights
+        buildTable();
+        return table.sample(random);
+    }
+
+    /**
+     * Draws the items of {@code count} consecutive rolls, starting at roll {@code position} of the stream
+     * seeded with {@code seed}. Each is drawn from the locked items less the results before it, as if every
+     * roll had been unlocked before the next was drawn; the index itself is not changed.
+     *
+     * A uniform draw picks the item of rank {@code nextInt(count)}, in logarithmic time, and only depends on
+     * the seed, the position and the set of locked items. A weighted draw uses the alias table, in constant
+     * time on average; it also depends on the unlocked items the table still holds, so only uniform draws
+     * can be verified by {@link RollRandom#replay}.
+     *
+     * @return the draws and the locked items each was made from, in order;
+     *         fewer than {@code count} if the locked items run out
+     */
+    public synchronized List<RollAuditLog.Entry> draw(long seed, long position, int count)
+    {
+        List<RollAuditLog.Entry> draws = new ArrayList<>(Math.min(count, size));
+        if (weigher != null && size > 0)
+        {
+            refreshTable();
+        }
+        int n = size;
+        long candidateHash = hash;
+        for (int k = 0; k < count && n > 0; k++)
+        {
+            SplittableRandom random = RollRandom.at(seed, position + k);
+            int result = weigher == null ? select(random.nextInt(n)) : weightedDraw(random, n);
+            draws.add(new RollAuditLog.Entry(position + k, candidateHash, n, result,
+                    weigher == null ? 0 : RollAuditLog.WEIGHTED, RollAuditLog.NO_SOURCE));
+
+            // the next roll is drawn as though this result were unlocked
+            setOrdered(result, false);
+            n--;
+            candidateHash -= RollRandom.itemHash(result);
+        }
+        for (RollAuditLog.Entry entry : draws)
+        {
+            setOrdered(entry.result, true);
+        }
+        return draws;
+    }
+
+    /**
+     * @param n the number of items still in the ordered set
+     * @return an item of the ordered set, drawn by weight
+     */
+    private int weightedDraw(SplittableRandom random, int n)
+    {
+        for (int attempt = 0; attempt < MAX_REJECTED_DRAWS; attempt++)
+        {
+            int itemId = table.sample(random);
+            if (isOrdered(itemId))
+            {
+                return itemId;
+            }
+        }
+        // the table's items that are gone carry almost all of its weight; walk the remaining ones instead
+        double total = 0;
+        for (int w = 0; w < bits.length; w++)
+        {
+            for (long word = bits[w]; word != 0; word &= word - 1)
+            {
+                total += weightOf((w << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+        if (total == 0)
+        {
+            return select(random.nextInt(n));
+        }
+        double target = random.nextDouble() * total;
+        int itemId = -1;
+        for (int w = 0; w < bits.length; w++)
+        {
+            for (long word = bits[w]; word != 0; word &= word - 1)
+            {
+                itemId = (w << 6) + Long.numberOfTrailingZeros(word);
+                target -= weightOf(itemId);
+                if (target < 0)
+                {
+                    return itemId;
+                }
+            }
+        }
+        return itemId;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    public synchronized void clear()
+    {
+        items = new int[0];
+        positions = new int[0];
+        bits = new long[0];
+        wordCounts = new int[1];
+        size = 0;
+        hash = 0;
+        table = null;
+    }
+
+    private void refreshTable()
+    {
+        if (table == null || staleWeight > table.getTotalWeight() / 4)
+        {
+            buildTable();
+        }
+    }
+
+    private void buildTable()
+    {
+        // in ascending order, so the table and the seeded draws from it do not depend on the order of updates
+        int[] ordered = new int[size];
+        double[] weights = new double[size];
+        int n = 0;
+        for (int w = 0; w < bits.length; w++)
+        {
+            for (long word = bits[w]; word != 0; word &= word - 1)
+            {
+                ordered[n] = (w << 6) + Long.numberOfTrailingZeros(word);
+                weights[n] = weightOf(ordered[n]);
+                n++;
+            }
+        }
+        table = new AliasTable(ordered, weights, n);
+        staleWeight = 0;
+    }
+
+    /**
+     * @return the item of rank {@code rank} in ascending order
+     */
+    private int select(int rank)
+    {
+        // descend the Fenwick tree to the last word whose preceding words hold at most rank items
+        int w = 0;
+        for (int step = Integer.highestOneBit(wordCounts.length - 1); step > 0; step >>= 1)
+        {
+            if (w + step < wordCounts.length && wordCounts[w + step] <= rank)
+            {
+                w += step;
+                rank -= wordCounts[w];
+            }
+        }
+        long word = bits[w];
+        for (int i = 0; i < rank; i++)
+        {
+            word &= word - 1;
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    private boolean isOrdered(int itemId)
+    {
+        int word = itemId >> 6;
+        return itemId >= 0 && word < bits.length && (bits[word] & (1L << itemId)) != 0;
+    }
+
+    /**
+     * Adds the item to or removes it from the ordered set. It must not already be in the requested state.
+     */
+    private void setOrdered(int itemId, boolean present)
+    {
+        int word = itemId >> 6;
+        if (word >= bits.length)
+        {
+            bits = Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+            buildWordCounts();
+        }
+        bits[word] ^= 1L << itemId;
+        int delta = present ? 1 : -1;
+        for (int i = word + 1; i < wordCounts.length; i += i & -i)
+        {
+            wordCounts[i] += delta;
+        }
+    }
+
+    private void buildWordCounts()
+    {
+        wordCounts = new int[bits.length + 1];
+        for (int i = 1; i < wordCounts.length; i++)
+        {
+            wordCounts[i] += Long.bitCount(bits[i - 1]);
+            int parent = i + (i & -i);
+            if (parent < wordCounts.length)
+            {
+                wordCounts[parent] += wordCounts[i];
+            }
+        }
+    }
+
+    private double weightOf(int itemId)
+    {
+        double weight = weigher.applyAsDouble(itemId);
+        return weight > 0 && !Double.isInfinite(weight) ? weight : 0;
+    }
+
+    private boolean contains(int itemId)
+    {
+        return itemId >= 0 && itemId < positions.length && positions[itemId] != 0;
+    }
+
+    private void add(int itemId)
+    {
+        if (itemId < 0 || contains(itemId))
+        {
+            return;
+        }
+        if (itemId >= positions.length)
+        {
+            positions = Arrays.copyOf(positions, Math.max(itemId + 1, positions.length * 2));
+        }
+        if (size == items.length)
+        {
+            items = Arrays.copyOf(items, Math.max(16, items.length * 2));
+        }
+        items[size++] = itemId;
+        positions[itemId] = size;
+        setOrdered(itemId, true);
+        hash += RollRandom.itemHash(itemId);
+        // a new item cannot be drawn from the current table
+        table = null;
+    }
+
+    private void remove(int itemId)
+    {
+        if (!contains(itemId))
+        {
+            return;
+        }
+        int slot = positions[itemId] - 1;
+        int last = items[--size];
+        items[slot] = last;
+        positions[last] = slot + 1;
+        positions[itemId] = 0;
+        setOrdered(itemId, false);
+        hash -= RollRandom.itemHash(itemId);
+        if (table != null)
+        {
+            staleWeight += weightOf(itemId);
+        }
+    }
+}
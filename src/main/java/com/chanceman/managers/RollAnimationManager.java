@@ -1,8 +1,9 @@
 package com.chanceman.managers;
 
+import com.chanceman.ChanceManConfig;
 import com.chanceman.ChanceManOverlay;
 import com.chanceman.ChanceManPanel;
-import lombok.Getter;
+import com.chanceman.persistence.RollAuditLog;
 import lombok.Setter;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
@@ -12,37 +13,91 @@ import net.runelite.client.callback.ClientThread;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import javax.swing.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Manages the roll animation for unlocking items.
- * It processes roll requests asynchronously and handles the roll animation through the overlay.
+ *
+ * A roll is a small state machine advanced by {@link #process()} on every client tick:
+ * {@link RollPhase#QUEUED} until its result can be drawn, then {@link RollPhase#SPINNING} and
+ * {@link RollPhase#HIGHLIGHTING} while the overlay animates, then {@link RollPhase#COMMITTED} once the
+ * item is unlocked. The result is drawn when the spin starts, so nothing is read back from the overlay,
+ * and no thread waits for the animation. Persisting the unlock and the roll log is left to the file executor.
+ *
+ * Once {@link ChanceManConfig#bulkRollThreshold()} rolls are waiting, the whole queue is resolved as one
+ * batch: every result is drawn up front, one animation lands on the last of them, and they are unlocked,
+ * logged, announced and shown in the panel together.
+ *
+ * Rolls queued for an item are journaled by {@link RollAuditManager#queueRoll} and acknowledged by their
+ * log record, or dropped if no locked item was left to draw for them, so the queue is not lost on logout
+ * or a crash: it is dropped from memory when the account changes and resumed from
+ * {@link RollAuditManager#getPendingRolls()} once the account is loaded.
  */
 @Singleton
 public class RollAnimationManager
 {
+    /**
+     * The stages of a roll.
+     */
+    enum RollPhase
+    {
+        QUEUED,
+        SPINNING,
+        HIGHLIGHTING,
+        COMMITTED
+    }
+
+    /**
+     * A requested roll and how far it has got.
+     */
+    private static final class Roll
+    {
+        // results named in a batch's chat summary
+        static final int SUMMARY_NAMES = 5;
+
+        final int queuedItemId;
+        final boolean manual;
+        RollPhase phase = RollPhase.QUEUED;
+        // the rolls resolved together with this one, itself included; null if it is resolved alone
+        List<Roll> batch;
+        // the results to unlock, in roll order
+        List<RollAuditLog.Entry> draws;
+        long phaseEndsAt;
+
+        Roll(int queuedItemId, boolean manual)
+        {
+            this.queuedItemId = queuedItemId;
+            this.manual = manual;
+        }
+
+        /**
+         * @return the item the roll's log record acknowledges
+         */
+        int source()
+        {
+            return manual ? RollAuditLog.NO_SOURCE : queuedItemId;
+        }
+    }
+
     @Inject private ItemManager itemManager;
     @Inject private Client client;
     @Inject private ClientThread clientThread;
+    @Inject private ChanceManConfig config;
     @Inject private UnlockedItemsManager unlockedManager;
     @Inject private ChanceManOverlay overlay;
     @Setter private ChanceManPanel chanceManPanel;
 
-    @Setter private HashSet<Integer> allTradeableItems;
-    private final Queue<Integer> rollQueue = new ConcurrentLinkedQueue<>();
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    @Inject private LockedItemIndex lockedItemIndex;
+    @Inject private RollAuditManager rollAuditManager;
+    @Inject private TradeableItemsManager tradeableItemsManager;
+    private final Queue<Roll> rollQueue = new ConcurrentLinkedQueue<>();
+    // guarded by this; advanced on the client thread
+    private Roll current;
     private volatile boolean isRolling = false;
     private final int rollDuration = 3000; // Continuous phase duration (ms)
     private final int highlightDuration = 1500; // Highlight phase (ms)
-    private final Random random = new Random();
-
-    @Getter
-    @Setter
-    private volatile boolean manualRoll = false;
 
     /**
      * Enqueues an item ID for the roll animation.
@@ -51,54 +106,176 @@ public class RollAnimationManager
      */
     public void enqueueRoll(int itemId)
     {
-        rollQueue.offer(itemId);
+        rollAuditManager.queueRoll(itemId);
+        rollQueue.offer(new Roll(itemId, false));
     }
 
     /**
-     * Processes the roll queue by initiating a roll animation if not already rolling.
+     * Re-enqueues rolls that were queued but not completed before the account was last unloaded.
+     *
+     * @param itemIds The items the rolls were queued for, in queue order.
      */
-    public void process()
+    public void resumeRolls(int[] itemIds)
     {
-        if (!isRolling && !rollQueue.isEmpty())
+        for (int itemId : itemIds)
         {
-            int queuedItemId = rollQueue.poll();
+            rollQueue.offer(new Roll(itemId, false));
+        }
+    }
+
+    /**
+     * Enqueues a roll requested from the panel.
+     *
+     * @param itemId The locked item the roll is announced for.
+     */
+    public void enqueueManualRoll(int itemId)
+    {
+        rollQueue.offer(new Roll(itemId, true));
+    }
+
+    /**
+     * Advances the current roll, or starts the next queued one. Must be called on the client thread.
+     */
+    public synchronized void process()
+    {
+        if (current == null)
+        {
+            current = rollQueue.poll();
+            if (current == null)
+            {
+                return;
+            }
             isRolling = true;
-            executor.submit(() -> performRoll(queuedItemId));
+        }
+
+        Roll roll = current;
+        long now = System.nanoTime();
+        switch (roll.phase)
+        {
+            case QUEUED:
+                if (!rollAuditManager.isLoaded() || tradeableItemsManager.getItems().isEmpty())
+                {
+                    // the account's roll stream or the rollable items are still loading
+                    return;
+                }
+                int threshold = config.bulkRollThreshold();
+                if (threshold > 0 && rollQueue.size() + 1 >= threshold)
+                {
+                    roll.batch = new ArrayList<>();
+                    roll.batch.add(roll);
+                    for (Roll queued; (queued = rollQueue.poll()) != null; )
+                    {
+                        roll.batch.add(queued);
+                    }
+                }
+                List<Roll> rolls = roll.batch == null ? Collections.singletonList(roll) : roll.batch;
+                List<RollAuditLog.Entry> draws = rollAuditManager.draw(lockedItemIndex, rolls.size());
+                if (draws.size() < rolls.size())
+                {
+                    // nothing left to unlock for the rest, so they are done and must not be resumed
+                    rollAuditManager.dropRolls(rolls.subList(draws.size(), rolls.size()).stream()
+                            .mapToInt(Roll::source)
+                            .filter(itemId -> itemId != RollAuditLog.NO_SOURCE)
+                            .toArray());
+                }
+                if (draws.isEmpty())
+                {
+                    finish();
+                    return;
+                }
+                roll.draws = new ArrayList<>(draws.size());
+                for (int i = 0; i < draws.size(); i++)
+                {
+                    roll.draws.add(draws.get(i).withSource(rolls.get(i).source()));
+                }
+                int finalItem = roll.draws.get(roll.draws.size() - 1).result;
+                overlay.startRollAnimation(finalItem, rollDuration, this::getRandomLockedItem);
+                roll.phase = RollPhase.SPINNING;
+                roll.phaseEndsAt = now + TimeUnit.MILLISECONDS.toNanos(rollDuration);
+                break;
+            case SPINNING:
+                if (now - roll.phaseEndsAt >= 0)
+                {
+                    roll.phase = RollPhase.HIGHLIGHTING;
+                    roll.phaseEndsAt += TimeUnit.MILLISECONDS.toNanos(highlightDuration);
+                }
+                break;
+            case HIGHLIGHTING:
+                if (now - roll.phaseEndsAt >= 0)
+                {
+                    commit(roll);
+                }
+                break;
+            default:
+                finish();
+                break;
         }
     }
 
     /**
-     * Performs the roll animation, unlocking the final item and sending a chat message.
+     * Unlocks the drawn items, logs the rolls and announces them.
      */
-    private void performRoll(int queuedItemId)
+    private void commit(Roll roll)
     {
-        overlay.startRollAnimation(0, rollDuration, this::getRandomLockedItem);
-        try {
-            Thread.sleep(rollDuration + highlightDuration);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        for (RollAuditLog.Entry draw : roll.draws)
+        {
+            unlockedManager.unlockItem(draw.result);
         }
-        int finalRolledItem = overlay.getFinalItem();
-        unlockedManager.unlockItem(finalRolledItem);
-        final boolean wasManualRoll = isManualRoll();
+        rollAuditManager.record(roll.draws);
+        roll.phase = RollPhase.COMMITTED;
         clientThread.invoke(() -> {
-            String message;
-            if (wasManualRoll)
-            {
-                message = "Unlocked " + "<col=267567>" + getItemName(finalRolledItem) + "</col>" +
-                      " by" + "<col=ff0000> pressing a button</col>";
-            }
-            else
-            {
-                message = "Unlocked " + "<col=267567>" + getItemName(finalRolledItem) + "</col>"
-                        + " by rolling " + "<col=ff0000>" + getItemName(queuedItemId) + "</col>";
-            }
+            String message = roll.batch == null ? rollMessage(roll) : batchMessage(roll);
             client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", message, null);
             if (chanceManPanel != null) {
-                SwingUtilities.invokeLater(() -> chanceManPanel.updatePanel());
+                int[] rolled = roll.draws.stream()
+                        .mapToInt(draw -> draw.source)
+                        .filter(itemId -> itemId != RollAuditLog.NO_SOURCE)
+                        .toArray();
+                chanceManPanel.rollsCompleted(rolled, roll.draws.stream().mapToInt(draw -> draw.result).toArray());
             }
         });
-        setManualRoll(false);
+        finish();
+    }
+
+    private String rollMessage(Roll roll)
+    {
+        int finalRolledItem = roll.draws.get(0).result;
+        if (roll.manual)
+        {
+            return "Unlocked " + "<col=267567>" + getItemName(finalRolledItem) + "</col>" +
+                    " by" + "<col=ff0000> pressing a button</col>";
+        }
+        return "Unlocked " + "<col=267567>" + getItemName(finalRolledItem) + "</col>"
+                + " by rolling " + "<col=ff0000>" + getItemName(roll.queuedItemId) + "</col>";
+    }
+
+    private String batchMessage(Roll roll)
+    {
+        int unlocked = roll.draws.size();
+        StringBuilder message = new StringBuilder("Unlocked ")
+                .append("<col=267567>").append(unlocked).append(unlocked == 1 ? " item" : " items").append("</col>")
+                .append(" from ")
+                .append("<col=ff0000>").append(roll.batch.size()).append(" rolls").append("</col>")
+                .append(": ");
+        int named = Math.min(unlocked, Roll.SUMMARY_NAMES);
+        for (int i = 0; i < named; i++)
+        {
+            if (i > 0)
+            {
+                message.append(", ");
+            }
+            message.append("<col=267567>").append(getItemName(roll.draws.get(i).result)).append("</col>");
+        }
+        if (unlocked > named)
+        {
+            message.append(" and ").append(unlocked - named).append(" more");
+        }
+        return message.toString();
+    }
+
+    private void finish()
+    {
+        current = null;
         isRolling = false;
     }
 
@@ -118,40 +295,84 @@ public class RollAnimationManager
      */
     public int getRandomLockedItem()
     {
-        List<Integer> locked = new ArrayList<>();
-        for (int id : allTradeableItems)
-        {
-            if (!unlockedManager.isUnlocked(id))
-            {
-                locked.add(id);
-            }
-        }
-        if (locked.isEmpty())
+        int selected = lockedItemIndex.sample();
+        if (selected < 0)
         {
             int fallback = overlay.getFinalItem();
             return fallback;
         }
-        int selected = locked.get(random.nextInt(locked.size()));
         return selected;
     }
 
+    /**
+     * Picks a random locked item from the list of tradeable items.
+     *
+     * @return A random locked item ID, or -1 if all items are unlocked.
+     */
+    public int pickLockedItem()
+    {
+        return lockedItemIndex.sample();
+    }
+
+    /**
+     * Sets how locked items are weighted, for both the reel and the final item.
+     *
+     * @param weighting The weighting mode from the config.
+     */
+    public void setWeighting(ChanceManConfig.RollWeighting weighting)
+    {
+        switch (weighting)
+        {
+            case GE_VALUE:
+                lockedItemIndex.setWeigher(id -> Math.max(1, itemManager.getItemPrice(id)));
+                break;
+            case INVERSE_GE_VALUE:
+                lockedItemIndex.setWeigher(id -> 1.0 / Math.max(1, itemManager.getItemPrice(id)));
+                break;
+            default:
+                lockedItemIndex.setWeigher(null);
+                break;
+        }
+    }
+
     public String getItemName(int itemId)
     {
         ItemComposition comp = itemManager.getItemComposition(itemId);
         return comp != null ? comp.getName() : "Unknown";
     }
 
-    public void startUp() {
-        if (executor == null || executor.isShutdown() || executor.isTerminated()) {
-            executor = Executors.newSingleThreadExecutor();
+    public synchronized void startUp()
+    {
+        rollQueue.clear();
+        finish();
+    }
+
+    /**
+     * Drops the current and queued rolls without completing them, for an account change.
+     * Queued rolls stay pending in the previous account's journal.
+     */
+    public synchronized void cancelRolls()
+    {
+        rollQueue.clear();
+        if (current != null && current.phase != RollPhase.COMMITTED && current.phase != RollPhase.QUEUED)
+        {
+            overlay.stopRollAnimation();
         }
+        finish();
     }
 
     /**
-     * Shuts down the roll animation executor service.
+     * Stops rolling. A roll whose result is already on screen is committed rather than lost;
+     * queued rolls are dropped, and resumed on the next login if they were queued for an item.
      */
-    public void shutdown()
+    public synchronized void shutdown()
     {
-        executor.shutdownNow();
+        Roll roll = current;
+        if (roll != null && roll.draws != null && !roll.draws.isEmpty() && roll.phase != RollPhase.COMMITTED)
+        {
+            commit(roll);
+        }
+        rollQueue.clear();
+        finish();
     }
 }
@@ -0,0 +1,438 @@
+package com.chanceman.managers;
+
+import com.chanceman.account.AccountManager;
+import com.chanceman.persistence.JournaledItemStore;
+import com.chanceman.persistence.RollAuditLog;
+import com.chanceman.persistence.WriteCoalescer;
+import com.google.gson.Gson;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static net.runelite.client.RuneLite.RUNELITE_DIR;
+
+/**
+ * Owns the current account's roll stream, roll log and roll queue.
+ * Each roll's result is drawn from the next position of the account's seeded stream
+ * ({@link RollRandom}) and logged, with the locked items it was drawn from, when the roll completes.
+ * The position is only advanced by a completed roll, so restarting the client mid-roll
+ * draws the same result again.
+ *
+ * Every roll queued for an item is journaled in {@code chanceman_roll_queue} like the item stores,
+ * and its log record names that item. Once that record is written the item is dropped from the queue,
+ * whose snapshot is rewritten, so the queue only holds the rolls still pending and a lost log cannot
+ * bring back rolls that already completed. On load, any queued item that does have a record (its
+ * drop was not persisted yet) is dropped then, and any logged result whose unlock was not persisted
+ * yet is reported so it can be redone.
+ */
+@Slf4j
+@Singleton
+public class RollAuditManager
+{
+    private volatile RollAuditLog auditLog;
+    private volatile List<RollAuditLog.Entry> entries = Collections.emptyList();
+    private volatile long seed;
+    private volatile long baselineHash;
+    private volatile long nextPosition;
+    private volatile CompletableFuture<Void> loading = CompletableFuture.completedFuture(null);
+    // a load's result is only published if no newer load has started; both happen under loadLock
+    private final Object loadLock = new Object();
+    private int loadGeneration;
+
+    private final ItemStateStore queuedRolls = new ItemStateStore();
+    private final JournaledItemStore queueStore = new JournaledItemStore();
+    private final WriteCoalescer pendingWrites = new WriteCoalescer();
+    private volatile Path loadedQueueFile;
+    private volatile int[] pendingRolls = new int[0];
+    private volatile int[] unappliedResults = new int[0];
+
+    @Inject private AccountManager accountManager;
+    @Inject private UnlockedItemsManager unlockedItemsManager;
+    @Inject private Gson gson;
+    /**
+     * The unlocked items' file executor, so the log is written in step with the unlocks.
+     */
+    @Setter private ExecutorService executor;
+    /**
+     * The rolled items' file executor, so a queued roll reaches disk before the item is marked rolled
+     * when {@link #flush} is called before the rolled items' flush.
+     */
+    @Setter private ExecutorService queueExecutor;
+
+    private Path getFilePath() throws IOException
+    {
+        return getAccountDir().resolve("chanceman_rolls.dat");
+    }
+
+    private Path getQueueFilePath() throws IOException
+    {
+        return getAccountDir().resolve("chanceman_roll_queue.json");
+    }
+
+    private Path getAccountDir() throws IOException
+    {
+        String name = accountManager.getPlayerName();
+        if (name == null)
+        {
+            throw new IOException("Player name is null");
+        }
+        return RUNELITE_DIR.toPath()
+                .resolve("chanceman")
+                .resolve(name);
+    }
+
+    /**
+     * Starts loading the current account's roll log and roll queue on the file executor, creating the log
+     * with a new seed on first use. Until the load completes no roll can be drawn.
+     *
+     * @return a future that completes once the log is loaded, or exceptionally if loading failed
+     */
+    public CompletableFuture<Void> loadRollLog()
+    {
+        int generation;
+        RollAuditLog previous;
+        synchronized (loadLock)
+        {
+            generation = ++loadGeneration;
+            if (accountManager.getPlayerName() == null)
+            {
+                return loading;
+            }
+            previous = auditLog;
+            auditLog = null;
+            entries = Collections.emptyList();
+            queuedRolls.clear();
+            loadedQueueFile = null;
+            pendingRolls = new int[0];
+            unappliedResults = new int[0];
+        }
+        Path file;
+        Path queueFile;
+        try
+        {
+            file = getFilePath();
+            queueFile = getQueueFilePath();
+        }
+        catch (IOException ioe)
+        {
+            return loading = CompletableFuture.completedFuture(null);
+        }
+
+        // the queue is read on its own executor, behind any of its writes that are still queued there
+        CompletableFuture<int[]> queueLoad = CompletableFuture.supplyAsync(() ->
+        {
+            try
+            {
+                return queueStore.isEmpty(queueFile) ? new int[0] : queueStore.load(queueFile, gson);
+            }
+            catch (IOException e)
+            {
+                log.error("Error loading roll queue", e);
+                throw new UncheckedIOException(e);
+            }
+        }, queueExecutor);
+        List<RollAuditLog.Entry> loaded = new ArrayList<>();
+        CompletableFuture<RollAuditLog> logLoad = CompletableFuture.supplyAsync(() ->
+        {
+            closeQuietly(previous);
+            RollAuditLog next = new RollAuditLog(file);
+            try
+            {
+                // the unlocked items load first on the same executor
+                next.load(loaded::add, () -> RollRandom.setHash(unlockedItemsManager.getUnlockedItems()));
+            }
+            catch (IOException e)
+            {
+                log.error("Error loading roll log", e);
+                throw new UncheckedIOException(e);
+            }
+            return next;
+        }, executor);
+
+        loading = logLoad.thenAcceptBoth(queueLoad, (next, queued) ->
+        {
+            // a newer load (account switch) supersedes this one; checked under the lock that load
+            // clears the state with, so a stale result can never be installed after that clear
+            synchronized (loadLock)
+            {
+                if (generation == loadGeneration)
+                {
+                    entries = loaded;
+                    seed = next.getSeed();
+                    baselineHash = next.getBaselineHash();
+                    nextPosition = loaded.isEmpty() ? 0 : loaded.get(loaded.size() - 1).position + 1;
+                    recover(loaded, queued);
+                    queuedRolls.addAll(pendingRolls);
+                    loadedQueueFile = queueFile;
+                    auditLog = next;
+                    if (pendingRolls.length < queued.length)
+                    {
+                        queueExecutor.execute(() -> compactQueue(queueFile));
+                    }
+                    return;
+                }
+            }
+            closeQuietly(next);
+        });
+        return loading;
+    }
+
+    /**
+     * Works out which queued rolls have no log record yet, and which logged results are not unlocked.
+     */
+    private void recover(List<RollAuditLog.Entry> loaded, int[] queued)
+    {
+        ItemStateStore acknowledged = new ItemStateStore();
+        List<Integer> unapplied = new ArrayList<>();
+        for (RollAuditLog.Entry entry : loaded)
+        {
+            if (entry.source != RollAuditLog.NO_SOURCE)
+            {
+                acknowledged.add(entry.source);
+            }
+            if (!unlockedItemsManager.isUnlocked(entry.result))
+            {
+                unapplied.add(entry.result);
+            }
+        }
+        pendingRolls = Arrays.stream(queued).filter(itemId -> !acknowledged.contains(itemId)).toArray();
+        unappliedResults = unapplied.stream().mapToInt(Integer::intValue).toArray();
+        if (pendingRolls.length > 0 || unappliedResults.length > 0)
+        {
+            log.info("Resuming {} pending roll(s), redoing {} unlock(s)", pendingRolls.length, unappliedResults.length);
+        }
+    }
+
+    /**
+     * @return the items whose queued roll had not completed when the account was last loaded, in queue order
+     */
+    public int[] getPendingRolls()
+    {
+        return pendingRolls;
+    }
+
+    /**
+     * @return the results of logged rolls whose unlock had not been persisted when the account was last loaded
+     */
+    public int[] getUnappliedResults()
+    {
+        return unappliedResults;
+    }
+
+    /**
+     * Journals a roll queued for {@code itemId} with the next flush, so it survives until its log record is written.
+     */
+    public void queueRoll(int itemId)
+    {
+        if (queuedRolls.add(itemId))
+        {
+            try
+            {
+                pendingWrites.add(getQueueFilePath(), itemId);
+            }
+            catch (IOException e)
+            {
+                log.error("Could not queue roll of {}", itemId, e);
+            }
+        }
+    }
+
+    /**
+     * Persists every roll queued since the last flush as a single journal batch.
+     * Must be called before the rolled items' flush, which shares its executor, so a roll is never
+     * on disk as rolled without also being queued.
+     */
+    public void flush()
+    {
+        if (queueExecutor == null)
+        {
+            return;
+        }
+        pendingWrites.flush(queueExecutor, (file, itemIds) ->
+                queueStore.appendAll(file, itemIds, () -> queueSnapshotFor(file), gson));
+    }
+
+    /**
+     * Drops queued rolls that completed without a result, because no locked item was left to draw,
+     * so they are not resumed on the next load.
+     *
+     * @param itemIds the items the rolls were queued for
+     */
+    public void dropRolls(int[] itemIds)
+    {
+        Path queueFile = loadedQueueFile;
+        if (queueFile == null || queueExecutor == null || itemIds.length == 0)
+        {
+            return;
+        }
+        acknowledge(queueFile, itemIds);
+    }
+
+    /**
+     * Drops completed rolls from the in-memory queue and rewrites the queue's snapshot without them.
+     */
+    private void acknowledge(Path queueFile, int[] itemIds)
+    {
+        synchronized (loadLock)
+        {
+            if (!queueFile.equals(loadedQueueFile) || !queuedRolls.removeAll(itemIds))
+            {
+                return;
+            }
+        }
+        queueExecutor.execute(() -> compactQueue(queueFile));
+    }
+
+    /**
+     * Rewrites the queue's snapshot from the in-memory queue, which also empties its journal.
+     * Runs on the queue's executor.
+     */
+    private void compactQueue(Path queueFile)
+    {
+        int[] items = queueSnapshotFor(queueFile);
+        if (items == null)
+        {
+            return;
+        }
+        try
+        {
+            queueStore.writeSnapshot(queueFile, items, gson);
+        }
+        catch (IOException e)
+        {
+            log.error("Could not compact roll queue {}", queueFile, e);
+        }
+    }
+
+    /**
+     * @return the in-memory queue if it belongs to {@code file}, otherwise null
+     */
+    private int[] queueSnapshotFor(Path file)
+    {
+        return file.equals(loadedQueueFile) ? queuedRolls.snapshot().toIntArray() : null;
+    }
+
+    /**
+     * @return true once the last requested load has completed successfully
+     */
+    public boolean isLoaded()
+    {
+        CompletableFuture<Void> current = loading;
+        return current.isDone() && !current.isCompletedExceptionally() && auditLog != null;
+    }
+
+    /**
+     * Draws the results of the next {@code count} rolls without advancing the stream.
+     * See {@link LockedItemIndex#draw(long, long, int)}.
+     *
+     * @return the draws, empty if the log is not loaded
+     */
+    public List<RollAuditLog.Entry> draw(LockedItemIndex lockedItems, int count)
+    {
+        if (!isLoaded())
+        {
+            return Collections.emptyList();
+        }
+        return lockedItems.draw(seed, nextPosition, count);
+    }
+
+    /**
+     * Advances the stream past a completed roll and appends it to the log.
+     */
+    public void record(RollAuditLog.Entry entry)
+    {
+        record(Collections.singletonList(entry));
+    }
+
+    /**
+     * Advances the stream past completed rolls and appends them to the log in one write.
+     * The append is queued on the file executor ahead of the unlocks' next journal flush,
+     * and once it is on disk the rolls' items are dropped from the queue.
+     */
+    public void record(List<RollAuditLog.Entry> completed)
+    {
+        RollAuditLog target = auditLog;
+        Path queueFile = loadedQueueFile;
+        if (target == null || executor == null || completed.isEmpty())
+        {
+            return;
+        }
+        int[] sources = completed.stream()
+                .mapToInt(entry -> entry.source)
+                .filter(itemId -> itemId != RollAuditLog.NO_SOURCE)
+                .toArray();
+        nextPosition = completed.get(completed.size() - 1).position + 1;
+        List<RollAuditLog.Entry> next = new ArrayList<>(entries.size() + completed.size());
+        next.addAll(entries);
+        next.addAll(completed);
+        entries = next;
+        executor.execute(() ->
+        {
+            try
+            {
+                target.append(completed);
+            }
+            catch (IOException e)
+            {
+                log.error("Could not log {} roll(s) from position {}", completed.size(), completed.get(0).position, e);
+                return;
+            }
+            if (queueFile != null && sources.length > 0)
+            {
+                acknowledge(queueFile, sources);
+            }
+        });
+    }
+
+    /**
+     * Replays the log against the given items on the file executor. See {@link RollRandom#replay}.
+     *
+     * @param universe the rollable items
+     * @param unlocked every unlocked item
+     */
+    public CompletableFuture<RollRandom.Verification> verify(ItemIdSet universe, ItemIdSet unlocked)
+    {
+        long logSeed = seed;
+        long logBaseline = baselineHash;
+        List<RollAuditLog.Entry> logged = entries;
+        return CompletableFuture.supplyAsync(
+                () -> RollRandom.replay(logSeed, logBaseline, logged, universe, unlocked), executor);
+    }
+
+    /**
+     * Closes the log and the queue's journal. Call once both file executors have drained.
+     */
+    public void close()
+    {
+        closeQuietly(auditLog);
+        auditLog = null;
+        queueStore.close();
+    }
+
+    private static void closeQuietly(RollAuditLog rollLog)
+    {
+        if (rollLog == null)
+        {
+            return;
+        }
+        try
+        {
+            rollLog.close();
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not close roll log {}", rollLog.getFile(), e);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.chanceman.managers;
+
+import com.chanceman.persistence.RollAuditLog;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The deterministic part of rolling: where each roll's randomness comes from and how it picks an item,
+ * plus a replay that checks a roll log against it.
+ *
+ * Every account has a seed. Roll number {@code n} draws from a generator seeded with the {@code n}th value
+ * of {@code new SplittableRandom(seed)}, which can be computed directly, so any roll can be reproduced
+ * without replaying the ones before it. A uniform roll picks the {@code k}th smallest locked item, where
+ * {@code k} is the generator's first {@code nextInt(count)}; a weighted roll draws from an alias table over
+ * the locked items, rejecting items unlocked since the table was built (see {@link LockedItemIndex#draw}).
+ *
+ * Sets of items are identified by a hash that is a sum over their items, so it can be updated
+ * as items are added and removed.
+ */
+public final class RollRandom
+{
+    // the increment SplittableRandom(long) uses
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private RollRandom()
+    {
+    }
+
+    /**
+     * @return the generator for roll {@code position} of the stream seeded with {@code seed}
+     */
+    public static SplittableRandom at(long seed, long position)
+    {
+        return new SplittableRandom(new SplittableRandom(seed + position * GOLDEN_GAMMA).nextLong());
+    }
+
+    /**
+     * @return an item's contribution to a candidate set hash
+     */
+    public static long itemHash(int itemId)
+    {
+        long z = itemId * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * @return the hash of a set of items
+     */
+    public static long setHash(Iterable<Integer> itemIds)
+    {
+        long hash = 0;
+        for (int itemId : itemIds)
+        {
+            hash += itemHash(itemId);
+        }
+        return hash;
+    }
+
+    /**
+     * Outcome of {@link #replay}.
+     */
+    public static final class Verification
+    {
+        /**
+         * Rolls whose result was reproduced exactly.
+         */
+        public int verified;
+        /**
+         * Rolls that could not be reproduced because the locked items differed from the replayed set,
+         * e.g. after a filter setting changed, or because they were weighted by GE prices that are not logged.
+         * Their result is only checked to have been locked.
+         */
+        public int unverifiable;
+        /**
+         * Index of the first roll that is inconsistent with the seed, or -1 if none is.
+         */
+        public int firstMismatch = -1;
+        /**
+         * True if the unlocked items that are not logged results are the ones unlocked before the log was created.
+         */
+        public boolean baselineMatches;
+
+        public boolean isValid()
+        {
+            return baselineMatches && firstMismatch < 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Verification{verified=" + verified + ", unverifiable=" + unverifiable
+                    + ", firstMismatch=" + firstMismatch + ", baselineMatches=" + baselineMatches + '}';
+        }
+    }
+
+    /**
+     * Replays a roll log. The unlocked items that are not logged results must match the log's baseline;
+     * the locked items start as {@code universe} minus those, and each roll's result is removed afterwards.
+     * Positions must run from 0 without gaps; a result that is not a locked item or that differs
+     * from the draw for its position (where the locked items match the logged hash) is a mismatch.
+     *
+     * @param seed         the log's seed
+     * @param baselineHash the log's baseline hash
+     * @param entries      the log's records, in order
+     * @param universe     the rollable items
+     * @param unlocked     every unlocked item
+     */
+    public static Verification replay(long seed, long baselineHash, List<RollAuditLog.Entry> entries,
+                                      ItemIdSet universe, ItemIdSet unlocked)
+    {
+        int words = Math.max(universe.words(), unlocked.words());
+        long[] rolled = new long[words];
+        for (RollAuditLog.Entry entry : entries)
+        {
+            set(rolled, entry.result);
+        }
+        long[] locked = universe.copyBits(words);
+        int count = 0;
+        long hash = 0;
+        long preLogHash = 0;
+        for (int w = 0; w < locked.length; w++)
+        {
+            // unlocked before the log began
+            long preLog = unlocked.word(w) & ~word(rolled, w);
+            locked[w] &= ~preLog;
+            while (preLog != 0)
+            {
+                preLogHash += itemHash((w << 6) + Long.numberOfTrailingZeros(preLog));
+                preLog &= preLog - 1;
+            }
+            long word = locked[w];
+            count += Long.bitCount(word);
+            while (word != 0)
+            {
+                hash += itemHash((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+
+        Verification verification = new Verification();
+        verification.baselineMatches = preLogHash == baselineHash;
+        for (int i = 0; i < entries.size(); i++)
+        {
+            RollAuditLog.Entry entry = entries.get(i);
+            boolean wasLocked = entry.result >= 0 && (word(locked, entry.result >> 6) & (1L << entry.result)) != 0;
+            if (entry.position != i || (!wasLocked && entry.candidateHash == hash))
+            {
+                verification.firstMismatch = i;
+                return verification;
+            }
+            if (entry.candidateHash != hash || entry.candidateCount != count || entry.isWeighted())
+            {
+                verification.unverifiable++;
+            }
+            else if (select(locked, at(seed, entry.position).nextInt(count)) == entry.result)
+            {
+                verification.verified++;
+            }
+            else
+            {
+                verification.firstMismatch = i;
+                return verification;
+            }
+            if (wasLocked)
+            {
+                locked[entry.result >> 6] &= ~(1L << entry.result);
+                count--;
+                hash -= itemHash(entry.result);
+            }
+        }
+        return verification;
+    }
+
+    /**
+     * @return the {@code rank}th smallest item in the bitset
+     */
+    private static int select(long[] bits, int rank)
+    {
+        for (int w = 0; w < bits.length; w++)
+        {
+            int inWord = Long.bitCount(bits[w]);
+            if (rank < inWord)
+            {
+                long word = bits[w];
+                for (int i = 0; i < rank; i++)
+                {
+                    word &= word - 1;
+                }
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+            rank -= inWord;
+        }
+        return -1;
+    }
+
+    private static long word(long[] bits, int index)
+    {
+        return index < bits.length ? bits[index] : 0L;
+    }
+
+    private static void set(long[] bits, int itemId)
+    {
+        if (itemId >= 0 && (itemId >> 6) < bits.length)
+        {
+            bits[itemId >> 6] |= 1L << itemId;
+        }
+    }
+}
@@ -1,61 +1,49 @@
 package com.chanceman.managers;
 
 import com.chanceman.account.AccountManager;
+import com.chanceman.persistence.JournaledItemStore;
+import com.chanceman.persistence.WriteCoalescer;
 import com.google.gson.Gson;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.file.*;
-import java.text.SimpleDateFormat;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 
 import static net.runelite.client.RuneLite.RUNELITE_DIR;
 
 /**
- * Manages the set of rolled items with atomic persistence.
+ * Manages the set of rolled items with journaled persistence.
  * Provides thread-safe operations for marking items as rolled,
- * loading from and saving to disk with backups and atomic moves.
+ * loading from disk (snapshot plus journal replay) and appending to the journal.
  */
 @Slf4j
 @Singleton
 public class RolledItemsManager
 {
-    private static final int MAX_BACKUPS = 10;
-    private final Set<Integer> rolledItems = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final ItemStateStore rolledItems = new ItemStateStore();
+    private final JournaledItemStore store = new JournaledItemStore();
+    private final WriteCoalescer pendingWrites = new WriteCoalescer();
+    private volatile Path loadedFile;
+    private volatile CompletableFuture<Void> loading = CompletableFuture.completedFuture(null);
+    // a load's result is only published if no newer load has started; both happen under loadLock
+    private final Object loadLock = new Object();
+    private int loadGeneration;
 
     @Inject private AccountManager accountManager;
     @Inject private Gson gson;
     @Setter private ExecutorService executor;
 
     /**
-     * Atomically moves source→target, but if ATOMIC_MOVE fails retries a normal move with REPLACE_EXISTING.
-     */
-    private void safeMove(Path source, Path target, CopyOption... opts) throws IOException
-    {
-        try
-        {
-            Files.move(source, target, opts);
-        }
-        catch (AtomicMoveNotSupportedException | AccessDeniedException ex)
-        {
-            // remove ATOMIC_MOVE, add REPLACE_EXISTING
-            Set<CopyOption> fallback = new HashSet<>(Arrays.asList(opts));
-            fallback.remove(StandardCopyOption.ATOMIC_MOVE);
-            fallback.add(StandardCopyOption.REPLACE_EXISTING);
-            Files.move(source, target, fallback.toArray(new CopyOption[0]));
-        }
-    }
-
-    /**
-     * Builds the file path for the current account's rolled-items JSON file.
+     * Builds the file path for the current account's rolled-items store. The binary snapshot and journal sit next to this JSON export.
      *
-     * @return path to the rolled items JSON file
+     * @return path to the rolled items JSON export
      */
     private Path getFilePath() throws IOException
     {
@@ -64,14 +52,13 @@ public class RolledItemsManager
         {
             throw new IOException("Player name is null");
         }
-        Path dir = RUNELITE_DIR.toPath()
+        return RUNELITE_DIR.toPath()
                 .resolve("chanceman")
-                .resolve(name);
-        Files.createDirectories(dir);
-        return dir.resolve("chanceman_rolled.json");
+                .resolve(name)
+                .resolve("chanceman_rolled.json");
     }
 
-      /**
+    /**
      * Checks if an item has been rolled.
      *
      * @param itemId The item ID.
@@ -83,7 +70,7 @@ public class RolledItemsManager
     }
 
     /**
-     * Marks an item as rolled and triggers an asynchronous save.
+     * Marks an item as rolled and queues it for the next journal flush.
      *
      * @param itemId The item ID to mark as rolled.
      */
@@ -91,22 +78,38 @@ public class RolledItemsManager
     {
         if (rolledItems.add(itemId))
         {
-            saveRolledItems();
+            try
+            {
+                pendingWrites.add(getFilePath(), itemId);
+            }
+            catch (IOException e)
+            {
+                log.error("Could not queue rolled item {}", itemId, e);
+            }
         }
     }
 
     /**
-     * Loads the set of rolled items from disk into memory.
-     * If the file does not exist or is empty, initializes an empty set.
+     * Starts loading the current account's rolled items on the file executor.
+     * The in-memory set is emptied immediately and stays empty until the load completes,
+     * so while it is in flight every item reads as not rolled.
+     * If nothing has been stored yet, initializes an empty snapshot.
+     *
+     * @return a future that completes once the set is loaded, or exceptionally if loading failed
      */
-    public void loadRolledItems()
+    public CompletableFuture<Void> loadRolledItems()
     {
-        if (accountManager.getPlayerName() == null)
+        int generation;
+        synchronized (loadLock)
         {
-            return;
+            generation = ++loadGeneration;
+            if (accountManager.getPlayerName() == null)
+            {
+                return loading;
+            }
+            rolledItems.clear();
+            loadedFile = null;
         }
-
-        rolledItems.clear();
         Path file;
         try
         {
@@ -114,79 +117,99 @@ public class RolledItemsManager
         }
         catch (IOException ioe)
         {
-            return;
+            return loading = CompletableFuture.completedFuture(null);
         }
 
-        if (!Files.exists(file))
+        loading = CompletableFuture.runAsync(() ->
         {
-            // first run: write an empty file
-            saveRolledItems();
-            return;
-        }
+            try
+            {
+                int[] loaded;
+                if (store.isEmpty(file))
+                {
+                    // first run: write an empty snapshot
+                    loaded = new int[0];
+                    store.writeSnapshot(file, loaded, gson);
+                }
+                else
+                {
+                    loaded = store.load(file, gson);
+                }
 
-        try (Reader r = Files.newBufferedReader(file))
-        {
-            Set<Integer> loaded = gson.fromJson(r,
-                    new com.google.gson.reflect.TypeToken<Set<Integer>>() {}.getType());
-            if (loaded != null)
+                // a newer load (account switch) supersedes this one; checked under the lock that load
+                // clears the set with, so a stale result can never be added after that clear
+                synchronized (loadLock)
+                {
+                    if (generation == loadGeneration)
+                    {
+                        rolledItems.addAll(loaded);
+                        loadedFile = file;
+                    }
+                }
+            }
+            catch (IOException e)
             {
-                rolledItems.addAll(loaded);
+                log.error("Error loading rolled items", e);
+                throw new UncheckedIOException(e);
             }
-        }
-        catch (IOException e)
+        }, executor);
+        return loading;
+    }
+
+    /**
+     * @return true once the last requested load has completed successfully
+     */
+    public boolean isLoaded()
+    {
+        CompletableFuture<Void> current = loading;
+        return current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    /**
+     * Persists every rolled item added since the last flush as a single journal batch.
+     * Called on each game tick and before logout or shutdown.
+     */
+    public void flush()
+    {
+        if (executor == null)
         {
-            log.error("Error loading rolled items", e);
+            return;
         }
+        pendingWrites.flush(executor, (file, itemIds) ->
+                store.appendAll(file, itemIds, () -> snapshotFor(file), gson));
+    }
+
+    /**
+     * @return the in-memory set if it belongs to {@code file}, otherwise null
+     */
+    private int[] snapshotFor(Path file)
+    {
+        return file.equals(loadedFile) ? rolledItems.snapshot().toIntArray() : null;
     }
 
     /**
-     * Saves the current set of rolled items to disk.
+     * Saves a full snapshot of the rolled items to disk and empties the journal.
      * Uses a temporary file and backups for atomicity and data safety.
      */
     public void saveRolledItems()
     {
-        executor.submit(() ->
+        Path file;
+        try
         {
-            Path file;
-            try
-            {
-                file = getFilePath();
-            }
-            catch (IOException ioe)
-            {
-                log.error("Could not resolve rolled‑items path", ioe);
-                return;
-            }
+            file = getFilePath();
+        }
+        catch (IOException ioe)
+        {
+            log.error("Could not resolve rolled‑items path", ioe);
+            return;
+        }
 
+        int[] items = rolledItems.snapshot().toIntArray();
+        executor.submit(() ->
+        {
             try
             {
-                // 1) backup current .json
-                if (Files.exists(file))
-                {
-                    Path backups = file.getParent().resolve("backups");
-                    Files.createDirectories(backups);
-                    String ts = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
-                    Path bak = backups.resolve(file.getFileName() + "." + ts + ".bak");
-                    safeMove(file, bak,
-                            StandardCopyOption.ATOMIC_MOVE,
-                            StandardCopyOption.REPLACE_EXISTING);
-                    // prune old backups…
-                    Files.list(backups)
-                            .filter(p -> p.getFileName().toString().startsWith(file.getFileName() + "."))
-                            .sorted(Comparator.comparing(Path::getFileName).reversed())
-                            .skip(MAX_BACKUPS)
-                            .forEach(p -> p.toFile().delete());
-                }
-
-                // 2) write new JSON to .tmp
-                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
-                try (BufferedWriter w = Files.newBufferedWriter(tmp))
-                {
-                    gson.toJson(rolledItems, w);
-                }
-
-                // 3) atomically replace .json
-                safeMove(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+                store.writeSnapshot(file, items, gson);
             }
             catch (IOException e)
             {
@@ -196,12 +219,21 @@ public class RolledItemsManager
     }
 
     /**
-     * Retrieves an unmodifiable set of rolled item IDs.
+     * Syncs and closes the journal. Call once the file executor has drained.
+     */
+    public void close()
+    {
+        store.close();
+    }
+
+    /**
+     * Retrieves an immutable snapshot of the rolled item IDs, in the order they were added.
+     * Membership checks on the snapshot are a single bit test.
      *
-     * @return An unmodifiable set of rolled item IDs.
+     * @return An immutable set of rolled item IDs.
      */
-    public Set<Integer> getRolledItems()
+    public ItemStateStore.Snapshot getRolledItems()
     {
-        return Collections.unmodifiableSet(rolledItems);
+        return rolledItems.snapshot();
     }
-}
\ No newline at end of file
+}
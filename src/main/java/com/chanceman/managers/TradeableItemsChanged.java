@@ -0,0 +1,41 @@
+package com.chanceman.managers;
+
+import lombok.Getter;
+
+/**
+ * Posted when {@link TradeableItemsManager} publishes a new set of rollable items.
+ * Carries the difference to the previous set so subscribers can update incrementally.
+ */
+@Getter
+public class TradeableItemsChanged
+{
+    /**
+     * The newly published set.
+     */
+    private final ItemIdSet items;
+    /**
+     * IDs that became rollable, ascending.
+     */
+    private final int[] added;
+    /**
+     * IDs that are no longer rollable, ascending.
+     */
+    private final int[] removed;
+
+    public TradeableItemsChanged(ItemIdSet items, int[] added, int[] removed)
+    {
+        this.items = items;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TradeableItemsChanged{" +
+                "size=" + items.size() +
+                ", added=" + added.length +
+                ", removed=" + removed.length +
+                '}';
+    }
+}
@@ -0,0 +1,623 @@
+package com.chanceman.managers;
+
+import com.chanceman.ChanceManConfig;
+import com.chanceman.ChanceManPanel;
+import com.chanceman.filters.CompiledItemsFilter;
+import com.chanceman.filters.PrerequisiteGraph;
+import com.chanceman.persistence.ItemUniverseCacheFile;
+import com.google.gson.Gson;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.Client;
+import net.runelite.api.ItemComposition;
+import net.runelite.client.callback.ClientThread;
+import net.runelite.client.eventbus.EventBus;
+import net.runelite.client.game.ItemManager;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.swing.SwingUtilities;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntPredicate;
+
+import static net.runelite.client.RuneLite.RUNELITE_DIR;
+
+/**
+ * Builds the set of item IDs that can be rolled (the "universe") from the item compositions
+ * and the current filter config.
+ *
+ * Building happens in two stages. First the tradeable and members flags of every item ID are read
+ * from the item compositions; this only depends on the item definitions in the game cache. Then the flags
+ * are filtered by the config, compiled into a {@link CompiledItemsFilter}, into the universe. Both results
+ * are cached in {@code chanceman/item_universe.dat}, keyed by the number of item definitions and the
+ * filter's hash, so a normal login just reads the file.
+ * If only the config changed, just the items whose exclusion changed are re-derived from the cached flags
+ * ({@link #reapplyFilter}), and the file is left alone until the next login derives and caches the universe
+ * for the new settings. Only a different item count needs a fresh scan of the compositions before anything
+ * is published.
+ *
+ * The item count is the cheapest key the client offers for the item definitions, but a game update can
+ * change definitions without adding items. So after publishing from the cache, the compositions are
+ * scanned again in the background, and the universe is rebuilt if their flags no longer match the cache.
+ *
+ * That scan is spread over client ticks: each {@link #step()} processes IDs until its time budget
+ * is spent. The finished set is published in one go; until then {@link #getItems()} keeps returning
+ * the previous set. Unlock prerequisites ({@link PrerequisiteGraph}, e.g. weapon poison) depend on the
+ * account's unlocks, so they are applied when publishing and are not part of the cache. After that an
+ * unlock only re-checks the items that depend on it ({@link #onItemUnlocked}).
+ *
+ * Every publish posts a {@link TradeableItemsChanged} with the IDs added and removed since the
+ * previous set, so subscribers can update incrementally.
+ */
+@Slf4j
+@Singleton
+public class TradeableItemsManager
+{
+    private static final int MAX_ITEM_ID = 40000;
+    private static final long STEP_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    // how many IDs to process between clock checks
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    @Inject private Client client;
+    @Inject private ClientThread clientThread;
+    @Inject private ItemManager itemManager;
+    @Inject private ChanceManConfig config;
+    @Inject private UnlockedItemsManager unlockedItemsManager;
+    @Inject private EventBus eventBus;
+    @Inject private Gson gson;
+    @Setter private ChanceManPanel chanceManPanel;
+    @Setter private ExecutorService executor;
+
+    /**
+     * The last fully built set of rollable item IDs, in ascending order. Never modified once published.
+     */
+    @Getter private volatile ItemIdSet items = ItemIdSet.EMPTY;
+    // the published universe before unlock prerequisites were applied, and the filter it was derived with
+    private ItemIdSet base = ItemIdSet.EMPTY;
+    private CompiledItemsFilter baseFilter;
+    /**
+     * Every tradeable item of the item definitions the published set was built from, whatever the filter settings.
+     */
+    @Getter private volatile ItemIdSet tradeableItems = ItemIdSet.EMPTY;
+
+    // recompiled only when a filter setting changes
+    private volatile CompiledItemsFilter filter;
+    // rebuilt together with the filter; the data file rules are read once
+    private volatile PrerequisiteGraph prerequisites;
+    private List<PrerequisiteGraph.Rule> rules;
+    // bumped by every refresh/reset, so results of a superseded build are dropped
+    private final AtomicInteger generation = new AtomicInteger();
+    // the generation of the last refresh, which a filter change does not supersede for checking the cache
+    private volatile int refreshGeneration = -1;
+    // flags and universe last read or written, only touched on the executor
+    private ItemUniverseCacheFile.Contents cached;
+
+    // scan state, only touched on the client thread
+    private int scanGeneration;
+    private int scanItemCount;
+    // true if the scan only checks flags that were already published from the cache
+    private boolean verifying;
+    private IntPredicate untracked;
+    private long[] tradeable;
+    private long[] members;
+    private int nextId;
+    private long startedAt;
+    private volatile int lastReportedPercent = -1;
+
+    private volatile boolean indexing = false;
+    private volatile boolean scanning = false;
+    private volatile int scanned = 0;
+
+    /**
+     * Rebuilds the universe for the current item definitions and config, from the cache if possible,
+     * in which case the cached flags are then checked by a background scan.
+     * Must be called on the client thread.
+     *
+     * @param untracked item IDs to leave out regardless of config, e.g. coins
+     */
+    public void refresh(IntPredicate untracked)
+    {
+        if (executor == null || executor.isShutdown())
+        {
+            return;
+        }
+        int gen = generation.incrementAndGet();
+        refreshGeneration = gen;
+        int itemCount = client.getItemCount();
+        CompiledItemsFilter filter = getFilter();
+        scanning = false;
+        scanned = 0;
+        indexing = true;
+        updatePanel(false);
+
+        executor.execute(() ->
+        {
+            ItemUniverseCacheFile.Contents contents = cachedFor(itemCount);
+            if (contents == null)
+            {
+                clientThread.invokeLater(() -> startScan(gen, itemCount, untracked, false));
+                return;
+            }
+            if (contents.filterHash != filter.getHash())
+            {
+                contents = derive(contents.itemCount, filter, contents.tradeable, contents.members, untracked);
+            }
+            publish(gen, filter, contents);
+            clientThread.invokeLater(() -> startScan(gen, itemCount, untracked, true));
+        });
+    }
+
+    /**
+     * Updates the universe after a filter setting changed. Only the items whose exclusion differs between the
+     * published set's filter and the current one are re-derived from the cached flags, so unlike
+     * {@link #refresh} the current set stays usable (and the panel is not put into the indexing state) while
+     * it runs. The unlock prerequisites are applied again as well. The cache file is not rewritten.
+     * Must be called on the client thread, after {@link #recompileFilter} if the exclusions changed.
+     *
+     * @param untracked item IDs to leave out regardless of config, e.g. coins
+     */
+    public void reapplyFilter(IntPredicate untracked)
+    {
+        if (executor == null || executor.isShutdown())
+        {
+            return;
+        }
+        if (indexing)
+        {
+            // a running scan reads the settings when it finishes; anything else is quick to restart
+            if (!scanning)
+            {
+                refresh(untracked);
+            }
+            return;
+        }
+        int gen = generation.incrementAndGet();
+        CompiledItemsFilter filter = getFilter();
+        executor.execute(() ->
+        {
+            ItemUniverseCacheFile.Contents contents = cached;
+            ItemIdSet previous;
+            CompiledItemsFilter previousFilter;
+            synchronized (this)
+            {
+                previous = base;
+                previousFilter = baseFilter;
+            }
+            if (contents == null || previousFilter == null)
+            {
+                clientThread.invokeLater(() -> refresh(untracked));
+                return;
+            }
+            long[] bits = applyFilterChange(previous, previousFilter, filter, contents, untracked);
+            publish(gen, filter, bits, contents.tradeable);
+        });
+    }
+
+    /**
+     * Scans the next chunk of item compositions within the per-step time budget, if a scan is running.
+     * Must be called on the client thread.
+     */
+    public void step()
+    {
+        if (!scanning)
+        {
+            return;
+        }
+
+        long deadline = System.nanoTime() + STEP_BUDGET_NANOS;
+        while (nextId < MAX_ITEM_ID)
+        {
+            int i = nextId++;
+            ItemComposition comp = itemManager.getItemComposition(i);
+            if (comp != null && comp.isTradeable())
+            {
+                tradeable[i >> 6] |= 1L << i;
+                if (comp.isMembers())
+                {
+                    members[i >> 6] |= 1L << i;
+                }
+            }
+            if (nextId % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() >= deadline)
+            {
+                break;
+            }
+        }
+        scanned = nextId;
+        if (nextId < MAX_ITEM_ID)
+        {
+            if (!verifying)
+            {
+                updatePanel(false);
+            }
+            return;
+        }
+
+        scanning = false;
+        log.debug("Scanned item compositions in {} ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt));
+        int itemCount = scanItemCount;
+        long[] tradeableFlags = tradeable;
+        long[] membersFlags = members;
+        IntPredicate scanUntracked = untracked;
+        CompiledItemsFilter filter = getFilter();
+        tradeable = null;
+        members = null;
+        if (!verifying)
+        {
+            int gen = scanGeneration;
+            executor.execute(() ->
+                    publish(gen, filter, derive(itemCount, filter, tradeableFlags, membersFlags, scanUntracked)));
+            return;
+        }
+        executor.execute(() ->
+        {
+            if (cached != null && cached.itemCount == itemCount && Arrays.equals(cached.tradeable, tradeableFlags)
+                    && Arrays.equals(cached.members, membersFlags))
+            {
+                return;
+            }
+            log.info("Item definitions changed since the universe was cached, rebuilding it");
+            ItemUniverseCacheFile.Contents contents = derive(itemCount, filter, tradeableFlags, membersFlags,
+                    scanUntracked);
+            publish(generation.incrementAndGet(), filter, contents);
+        });
+    }
+
+    /**
+     * @return true while the universe is being rebuilt
+     */
+    public boolean isIndexing()
+    {
+        return indexing;
+    }
+
+    /**
+     * @return how far the current rebuild has got, from 0 to 100
+     */
+    public int getProgressPercent()
+    {
+        return (int) (scanned * 100L / MAX_ITEM_ID);
+    }
+
+    /**
+     * @return true if the item ID is in the published set
+     */
+    public boolean contains(int itemId)
+    {
+        return items.contains(itemId);
+    }
+
+    /**
+     * Recompiles the item filter and the prerequisite graph from the current config.
+     * Call when a filter setting changes, before {@link #refresh}.
+     */
+    public synchronized void recompileFilter()
+    {
+        if (rules == null)
+        {
+            rules = PrerequisiteGraph.loadRules(gson);
+        }
+        filter = CompiledItemsFilter.compile(config);
+        prerequisites = PrerequisiteGraph.build(rules, config.requireWeaponPoison());
+    }
+
+    /**
+     * @return the unlock prerequisites the published set was built with
+     */
+    public PrerequisiteGraph getPrerequisites()
+    {
+        if (prerequisites == null)
+        {
+            recompileFilter();
+        }
+        return prerequisites;
+    }
+
+    /**
+     * Cancels any rebuild and forgets the published set. The on-disk cache is kept.
+     */
+    public synchronized void reset()
+    {
+        generation.incrementAndGet();
+        refreshGeneration = -1;
+        // config changes are not tracked while disabled
+        filter = null;
+        prerequisites = null;
+        scanning = false;
+        indexing = false;
+        tradeable = null;
+        members = null;
+        scanned = 0;
+        items = ItemIdSet.EMPTY;
+        base = ItemIdSet.EMPTY;
+        baseFilter = null;
+        tradeableItems = ItemIdSet.EMPTY;
+    }
+
+    private void startScan(int gen, int itemCount, IntPredicate untracked, boolean verify)
+    {
+        if (gen != (verify ? refreshGeneration : generation.get()))
+        {
+            return;
+        }
+        scanGeneration = gen;
+        scanItemCount = itemCount;
+        verifying = verify;
+        this.untracked = untracked;
+        tradeable = new long[(MAX_ITEM_ID >> 6) + 1];
+        members = new long[tradeable.length];
+        nextId = 0;
+        startedAt = System.nanoTime();
+        scanning = true;
+    }
+
+    /**
+     * @return the cached flags if they were read from {@code itemCount} item definitions, else null.
+     *         Runs on the executor.
+     */
+    private ItemUniverseCacheFile.Contents cachedFor(int itemCount)
+    {
+        if (cached == null)
+        {
+            Path file = getCachePath();
+            if (Files.exists(file))
+            {
+                try
+                {
+                    cached = ItemUniverseCacheFile.read(file);
+                }
+                catch (IOException e)
+                {
+                    log.warn("Ignoring unreadable universe cache {}", file, e);
+                }
+            }
+        }
+        if (cached == null || cached.itemCount != itemCount)
+        {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Filters the flags through {@code filter} into the universe and caches the result. Runs on the executor.
+     */
+    private ItemUniverseCacheFile.Contents derive(int itemCount, CompiledItemsFilter filter, long[] tradeableFlags,
+                                                   long[] membersFlags, IntPredicate untracked)
+    {
+        int[] universe = new int[MAX_ITEM_ID];
+        int size = 0;
+        // a word at a time: tradeable and not excluded (and not members, in free-to-play)
+        for (int w = 0; w < tradeableFlags.length; w++)
+        {
+            long word = tradeableFlags[w] & ~filter.excludedWord(w);
+            if (filter.isExcludeMembers())
+            {
+                word &= ~membersFlags[w];
+            }
+            while (word != 0)
+            {
+                int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (i < MAX_ITEM_ID && !untracked.test(i))
+                {
+                    universe[size++] = i;
+                }
+            }
+        }
+
+        cached = new ItemUniverseCacheFile.Contents(itemCount, filter.getHash(), tradeableFlags, membersFlags,
+                Arrays.copyOf(universe, size));
+        try
+        {
+            ItemUniverseCacheFile.write(getCachePath(), cached);
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not write universe cache", e);
+        }
+        return cached;
+    }
+
+    /**
+     * Re-derives only the items whose exclusion differs between two filters: the words where the exclusion
+     * bitmaps differ, plus the members items if the free-to-play setting changed. Runs on the executor.
+     *
+     * @param base the universe derived with {@code from}
+     * @return the universe for {@code to}
+     */
+    private static long[] applyFilterChange(ItemIdSet base, CompiledItemsFilter from, CompiledItemsFilter to,
+                                            ItemUniverseCacheFile.Contents flags, IntPredicate untracked)
+    {
+        long[] bits = base.copyBits(flags.tradeable.length);
+        boolean membersChanged = from.isExcludeMembers() != to.isExcludeMembers();
+        for (int w = 0; w < flags.tradeable.length; w++)
+        {
+            long changed = from.excludedWord(w) ^ to.excludedWord(w);
+            if (membersChanged)
+            {
+                changed |= flags.members[w];
+            }
+            changed &= flags.tradeable[w];
+            if (changed == 0)
+            {
+                continue;
+            }
+            long word = flags.tradeable[w] & ~to.excludedWord(w);
+            if (to.isExcludeMembers())
+            {
+                word &= ~flags.members[w];
+            }
+            for (long added = word & changed; added != 0; added &= added - 1)
+            {
+                int i = (w << 6) + Long.numberOfTrailingZeros(added);
+                if (i >= MAX_ITEM_ID || untracked.test(i))
+                {
+                    word &= ~(1L << i);
+                }
+            }
+            bits[w] = (bits[w] & ~changed) | (word & changed);
+        }
+        return bits;
+    }
+
+    /**
+     * Publishes the universe of {@code contents}, which was derived with {@code filter}.
+     */
+    private void publish(int gen, CompiledItemsFilter filter, ItemUniverseCacheFile.Contents contents)
+    {
+        long[] bits = new long[(MAX_ITEM_ID >> 6) + 1];
+        for (int itemId : contents.universe)
+        {
+            bits[itemId >> 6] |= 1L << itemId;
+        }
+        publish(gen, filter, bits, contents.tradeable);
+    }
+
+    /**
+     * Applies the unlock prerequisites and publishes the result, unless a newer rebuild has started,
+     * then posts the difference to the previous set.
+     *
+     * @param filter         the filter {@code bits} were derived with
+     * @param bits           the universe before unlock prerequisites; modified
+     * @param tradeableFlags every tradeable item
+     */
+    private void publish(int gen, CompiledItemsFilter filter, long[] bits, long[] tradeableFlags)
+    {
+        ItemIdSet nextBase = ItemIdSet.wrap(bits.clone());
+
+        ItemIdSet next;
+        ItemIdSet previous;
+        synchronized (this)
+        {
+            if (gen != generation.get())
+            {
+                return;
+            }
+            // under the lock, so an unlock racing with this publish is seen either here or by onItemUnlocked
+            removeIneligible(bits);
+            next = ItemIdSet.wrap(bits);
+            previous = items;
+            base = nextBase;
+            baseFilter = filter;
+            items = next;
+            if (!tradeableItems.sameItems(tradeableFlags))
+            {
+                tradeableItems = ItemIdSet.wrap(tradeableFlags.clone());
+            }
+            indexing = false;
+        }
+        int[] added = ItemIdSet.difference(next, previous);
+        int[] removed = ItemIdSet.difference(previous, next);
+        log.debug("Published {} rollable items ({} added, {} removed)", next.size(), added.length, removed.length);
+        if (added.length > 0 || removed.length > 0)
+        {
+            eventBus.post(new TradeableItemsChanged(next, added, removed));
+        }
+        updatePanel(true);
+    }
+
+    /**
+     * Adds the items that became eligible because {@code itemId} was unlocked.
+     * Only the items depending on that item are checked. Called from {@link UnlockedItemsManager#unlockItem}.
+     */
+    public void onItemUnlocked(int itemId)
+    {
+        PrerequisiteGraph graph = getPrerequisites();
+        int[] dependents = graph.getDependents(itemId);
+        if (dependents.length == 0)
+        {
+            return;
+        }
+
+        ItemIdSet next;
+        int[] added = new int[dependents.length];
+        int count = 0;
+        synchronized (this)
+        {
+            ItemIdSet current = items;
+            ItemStateStore.Snapshot unlocked = unlockedItemsManager.getUnlockedItems();
+            for (int dependentId : dependents)
+            {
+                if (base.contains(dependentId) && !current.contains(dependentId)
+                        && graph.isEligible(dependentId, unlocked::contains))
+                {
+                    added[count++] = dependentId;
+                }
+            }
+            if (count == 0)
+            {
+                return;
+            }
+            long[] bits = current.copyBits(0);
+            for (int i = 0; i < count; i++)
+            {
+                bits[added[i] >> 6] |= 1L << added[i];
+            }
+            next = ItemIdSet.wrap(bits);
+            items = next;
+        }
+        // dependents are ascending, so added is too
+        added = Arrays.copyOf(added, count);
+        log.debug("Unlocking {} made {} items rollable", itemId, count);
+        eventBus.post(new TradeableItemsChanged(next, added, new int[0]));
+        updatePanel(true);
+    }
+
+    /**
+     * Clears items whose prerequisites are not all unlocked. Only the gated items are checked,
+     * not the whole universe.
+     */
+    private void removeIneligible(long[] bits)
+    {
+        PrerequisiteGraph graph = getPrerequisites();
+        ItemStateStore.Snapshot unlocked = unlockedItemsManager.getUnlockedItems();
+        for (int itemId : graph.getGatedItems())
+        {
+            int word = itemId >> 6;
+            if (itemId >= 0 && word < bits.length && (bits[word] & (1L << itemId)) != 0
+                    && !graph.isEligible(itemId, unlocked::contains))
+            {
+                bits[word] &= ~(1L << itemId);
+            }
+        }
+    }
+
+    /**
+     * Updates the panel's count and indexing text on completion, or whenever the percentage changes.
+     * The universe does not affect the item lists, so they are not rebuilt.
+     */
+    private void updatePanel(boolean finished)
+    {
+        ChanceManPanel panel = chanceManPanel;
+        int percent = getProgressPercent();
+        if (panel == null || (!finished && percent == lastReportedPercent))
+        {
+            return;
+        }
+        lastReportedPercent = finished ? -1 : percent;
+        SwingUtilities.invokeLater(panel::updateIndexingStatus);
+    }
+
+    private CompiledItemsFilter getFilter()
+    {
+        if (filter == null)
+        {
+            recompileFilter();
+        }
+        return filter;
+    }
+
+    private static Path getCachePath()
+    {
+        return RUNELITE_DIR.toPath().resolve("chanceman").resolve("item_universe.dat");
+    }
+}
@@ -1,61 +1,56 @@
 package com.chanceman.managers;
 
 import com.chanceman.account.AccountManager;
+import com.chanceman.persistence.JournaledItemStore;
+import com.chanceman.persistence.WriteCoalescer;
 import com.google.gson.Gson;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.Reader;
-import java.nio.file.*;
-import java.text.SimpleDateFormat;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.function.IntConsumer;
 
 import static net.runelite.client.RuneLite.RUNELITE_DIR;
 
 /**
- * Manages the set of unlocked items with robust, atomic persistence and 10‑file backup rotation.
+ * Manages the set of unlocked items with journaled persistence.
+ * Each unlock appends one record to an append-only journal; the journal is periodically
+ * compacted into a binary snapshot, which is backed up under {@code backups/}.
  */
 @Slf4j
 @Singleton
 public class UnlockedItemsManager
 {
-    private static final int MAX_BACKUPS = 10;
-
-    private final Set<Integer> unlockedItems = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final ItemStateStore unlockedItems = new ItemStateStore();
+    private final JournaledItemStore store = new JournaledItemStore();
+    private final WriteCoalescer pendingWrites = new WriteCoalescer();
+    private volatile Path loadedFile;
+    private volatile CompletableFuture<Void> loading = CompletableFuture.completedFuture(null);
+    // a load's result is only published if no newer load has started; both happen under loadLock
+    private final Object loadLock = new Object();
+    private int loadGeneration;
 
     @Inject private AccountManager accountManager;
     @Inject private Gson gson;
     @Setter private ExecutorService executor;
+    /**
+     * Called with each newly unlocked item ID, on the thread that unlocked it,
+     * so state derived from the unlocked set can be updated incrementally.
+     */
+    @Setter private volatile IntConsumer unlockListener;
 
     public boolean ready()
     {
         return accountManager.getPlayerName() != null;
     }
 
-    /**
-     * Atomically moves source→target, but if ATOMIC_MOVE fails retries a normal move with REPLACE_EXISTING.
-     */
-    private void safeMove(Path source, Path target, CopyOption... opts) throws IOException
-    {
-        try
-        {
-            Files.move(source, target, opts);
-        }
-        catch (AtomicMoveNotSupportedException | AccessDeniedException ex)
-        {
-            // retry without ATOMIC_MOVE but with REPLACE_EXISTING
-            Set<CopyOption> fallback = new HashSet<>(Arrays.asList(opts));
-            fallback.remove(StandardCopyOption.ATOMIC_MOVE);
-            fallback.add(StandardCopyOption.REPLACE_EXISTING);
-            Files.move(source, target, fallback.toArray(new CopyOption[0]));
-        }
-    }
-
     private Path getFilePath() throws IOException
     {
         String name = accountManager.getPlayerName();
@@ -63,11 +58,10 @@ public class UnlockedItemsManager
         {
             throw new IOException("Player name is null");
         }
-        Path dir = RUNELITE_DIR.toPath()
+        return RUNELITE_DIR.toPath()
                 .resolve("chanceman")
-                .resolve(name);
-        Files.createDirectories(dir);
-        return dir.resolve("chanceman_unlocked.json");
+                .resolve(name)
+                .resolve("chanceman_unlocked.json");
     }
 
     public boolean isUnlocked(int itemId)
@@ -75,22 +69,52 @@ public class UnlockedItemsManager
         return unlockedItems.contains(itemId);
     }
 
+    /**
+     * Marks an item as unlocked, queues it for the next journal flush and notifies the unlock listener.
+     *
+     * @param itemId The item ID to unlock.
+     */
     public void unlockItem(int itemId)
     {
         if (unlockedItems.add(itemId))
         {
-            saveUnlockedItems();
+            IntConsumer listener = unlockListener;
+            if (listener != null)
+            {
+                listener.accept(itemId);
+            }
+            try
+            {
+                pendingWrites.add(getFilePath(), itemId);
+            }
+            catch (IOException e)
+            {
+                log.error("Could not queue unlocked item {}", itemId, e);
+            }
         }
     }
 
-    public void loadUnlockedItems()
+    /**
+     * Starts loading the current account's unlocked items on the file executor.
+     * The in-memory set is emptied immediately and stays empty until the load completes,
+     * so while it is in flight every item reads as not unlocked.
+     * If nothing has been stored yet, initializes an empty snapshot.
+     *
+     * @return a future that completes once the set is loaded, or exceptionally if loading failed
+     */
+    public CompletableFuture<Void> loadUnlockedItems()
     {
-        if (!ready())
+        int generation;
+        synchronized (loadLock)
         {
-            return;
+            generation = ++loadGeneration;
+            if (!ready())
+            {
+                return loading;
+            }
+            unlockedItems.clear();
+            loadedFile = null;
         }
-
-        unlockedItems.clear();
         Path file;
         try
         {
@@ -98,75 +122,98 @@ public class UnlockedItemsManager
         }
         catch (IOException ioe)
         {
-            return;
+            return loading = CompletableFuture.completedFuture(null);
         }
 
-        if (!Files.exists(file))
+        loading = CompletableFuture.runAsync(() ->
         {
-            // first‑run: empty set → write an empty JSON file
-            saveUnlockedItems();
-            return;
-        }
+            try
+            {
+                int[] loaded;
+                if (store.isEmpty(file))
+                {
+                    // first‑run: empty set → write an empty snapshot
+                    loaded = new int[0];
+                    store.writeSnapshot(file, loaded, gson);
+                }
+                else
+                {
+                    loaded = store.load(file, gson);
+                }
 
-        try (Reader r = Files.newBufferedReader(file))
-        {
-            Set<Integer> loaded = gson.fromJson(r,
-                    new com.google.gson.reflect.TypeToken<Set<Integer>>() {}.getType());
-            if (loaded != null)
+                // a newer load (account switch) supersedes this one; checked under the lock that load
+                // clears the set with, so a stale result can never be added after that clear
+                synchronized (loadLock)
+                {
+                    if (generation == loadGeneration)
+                    {
+                        unlockedItems.addAll(loaded);
+                        loadedFile = file;
+                    }
+                }
+            }
+            catch (IOException e)
             {
-                unlockedItems.addAll(loaded);
+                log.error("Error loading unlocked items", e);
+                throw new UncheckedIOException(e);
             }
-        }
-        catch (IOException e)
+        }, executor);
+        return loading;
+    }
+
+    /**
+     * @return true once the last requested load has completed successfully
+     */
+    public boolean isLoaded()
+    {
+        CompletableFuture<Void> current = loading;
+        return current.isDone() && !current.isCompletedExceptionally();
+    }
+
+    /**
+     * Persists every unlocked item added since the last flush as a single journal batch.
+     * Called on each game tick and before logout or shutdown.
+     */
+    public void flush()
+    {
+        if (executor == null)
         {
-            log.error("Error loading unlocked items", e);
+            return;
         }
+        pendingWrites.flush(executor, (file, itemIds) ->
+                store.appendAll(file, itemIds, () -> snapshotFor(file), gson));
     }
 
+    /**
+     * @return the in-memory set if it belongs to {@code file}, otherwise null
+     */
+    private int[] snapshotFor(Path file)
+    {
+        return file.equals(loadedFile) ? unlockedItems.snapshot().toIntArray() : null;
+    }
+
+    /**
+     * Writes a full snapshot of the unlocked items and empties the journal.
+     */
     public void saveUnlockedItems()
     {
-        executor.submit(() ->
+        Path file;
+        try
         {
-            Path file;
-            try
-            {
-                file = getFilePath();
-            }
-            catch (IOException ioe)
-            {
-                log.error("Could not resolve file path", ioe);
-                return;
-            }
+            file = getFilePath();
+        }
+        catch (IOException ioe)
+        {
+            log.error("Could not resolve file path", ioe);
+            return;
+        }
 
+        int[] items = unlockedItems.snapshot().toIntArray();
+        executor.submit(() ->
+        {
             try
             {
-                // 1) rotate .json → .bak
-                if (Files.exists(file))
-                {
-                    Path backups = file.getParent().resolve("backups");
-                    Files.createDirectories(backups);
-                    String ts = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
-                    Path bak = backups.resolve(file.getFileName() + "." + ts + ".bak");
-                    safeMove(file, bak,
-                            StandardCopyOption.ATOMIC_MOVE,
-                            StandardCopyOption.REPLACE_EXISTING);
-                    // prune older backups…
-                    Files.list(backups)
-                            .filter(p -> p.getFileName().toString().startsWith(file.getFileName() + "."))
-                            .sorted(Comparator.comparing(Path::getFileName).reversed())
-                            .skip(MAX_BACKUPS)
-                            .forEach(p -> p.toFile().delete());
-                }
-
-                // 2) write new JSON to .tmp
-                Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
-                try (BufferedWriter w = Files.newBufferedWriter(tmp))
-                {
-                    gson.toJson(unlockedItems, w);
-                }
-
-                // 3) atomically replace .json with .tmp
-                safeMove(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+                store.writeSnapshot(file, items, gson);
             }
             catch (IOException e)
             {
@@ -175,14 +222,22 @@ public class UnlockedItemsManager
         });
     }
 
+    /**
+     * Syncs and closes the journal. Call once the file executor has drained.
+     */
+    public void close()
+    {
+        store.close();
+    }
 
     /**
-     * Retrieves an unmodifiable set of unlocked item IDs.
+     * Retrieves an immutable snapshot of the unlocked item IDs, in the order they were added.
+     * Membership checks on the snapshot are a single bit test.
      *
-     * @return An unmodifiable set of unlocked item IDs.
+     * @return An immutable set of unlocked item IDs.
      */
-    public Set<Integer> getUnlockedItems()
+    public ItemStateStore.Snapshot getUnlockedItems()
     {
-        return Collections.unmodifiableSet(unlockedItems);
+        return unlockedItems.snapshot();
     }
 }
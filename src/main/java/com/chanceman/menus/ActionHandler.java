@@ -90,6 +90,8 @@ public class ActionHandler {
 	}
 
 	private boolean inactive() {
+		// Deliberately not gated on the load finishing: while it is in flight the unlocked set
+		// is empty, so every item is treated as locked rather than briefly allowed.
 		if (!unlockedItemsManager.ready()) return true;
 		return client.getGameState().getState() < GameState.LOADING.getState();
 	}
@@ -0,0 +1,261 @@
+package com.chanceman.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Backups for one item store, kept as a periodic full base plus deltas.
+ *
+ * A base ({@code <name>.base.<stamp>.dat}) is a full copy of the set and is written at most once per
+ * {@link #BASE_INTERVAL_MS}. In between, each backup is a delta
+ * ({@code <name>.delta.<baseStamp>.<stamp>.dat}) holding only the IDs added since that base, so
+ * restoring needs one base and its newest delta. Because the sets only grow, deltas stay small.
+ * Old files are pruned by age when a new base is written, not on every backup.
+ */
+@Slf4j
+class DeltaBackupStore
+{
+    private static final long BASE_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long RETENTION_MS = TimeUnit.DAYS.toMillis(14);
+    private static final String STAMP_FORMAT = "yyyyMMddHHmmss";
+
+    private final Path dir;
+    private final String basePrefix;
+    private final String deltaPrefix;
+
+    // cached state of the current base, loaded lazily from disk
+    private boolean baseLoaded = false;
+    private String baseStamp;
+    private long[] baseBits;
+
+    /**
+     * @param dir  the backups directory
+     * @param name the store's file name without extension, e.g. {@code chanceman_unlocked}
+     */
+    DeltaBackupStore(Path dir, String name)
+    {
+        this.dir = dir;
+        this.basePrefix = name + ".base.";
+        this.deltaPrefix = name + ".delta.";
+    }
+
+    Path getDir()
+    {
+        return dir;
+    }
+
+    /**
+     * Records {@code items} as the latest backup: a new base if the current one is missing or
+     * older than the base interval, otherwise a delta against the current base.
+     */
+    void record(int[] items) throws IOException
+    {
+        Files.createDirectories(dir);
+        long now = System.currentTimeMillis();
+        loadBase();
+
+        if (baseStamp == null || now - parseStamp(baseStamp) >= BASE_INTERVAL_MS)
+        {
+            writeBase(items, now);
+            prune(now);
+            return;
+        }
+
+        int[] added = Arrays.stream(items).filter(id -> !contains(baseBits, id)).toArray();
+        if (added.length == 0)
+        {
+            return;
+        }
+        write(dir.resolve(deltaPrefix + baseStamp + "." + stamp(now) + ".dat"), added);
+    }
+
+    /**
+     * Rebuilds the most recent backed-up state from the newest readable base and its newest readable delta.
+     *
+     * @throws IOException if no readable base exists
+     */
+    int[] restoreLatest() throws IOException
+    {
+        for (Path base : list(basePrefix))
+        {
+            ItemSnapshotFile.Contents contents;
+            try
+            {
+                contents = ItemSnapshotFile.read(base);
+            }
+            catch (IOException e)
+            {
+                log.warn("Skipping unreadable backup {}", base, e);
+                continue;
+            }
+
+            String stamp = base.getFileName().toString().substring(basePrefix.length()).replace(".dat", "");
+            for (Path delta : list(deltaPrefix + stamp + "."))
+            {
+                try
+                {
+                    int[] added = ItemSnapshotFile.read(delta).order;
+                    int[] merged = Arrays.copyOf(contents.order, contents.order.length + added.length);
+                    System.arraycopy(added, 0, merged, contents.order.length, added.length);
+                    log.info("Restored from backup {} + {}", base.getFileName(), delta.getFileName());
+                    return merged;
+                }
+                catch (IOException e)
+                {
+                    log.warn("Skipping unreadable backup {}", delta, e);
+                }
+            }
+            log.info("Restored from backup {}", base.getFileName());
+            return contents.order;
+        }
+        throw new IOException("No readable backup in " + dir);
+    }
+
+    private void loadBase() throws IOException
+    {
+        if (baseLoaded)
+        {
+            return;
+        }
+        baseLoaded = true;
+        for (Path base : list(basePrefix))
+        {
+            try
+            {
+                baseBits = ItemSnapshotFile.read(base).bits;
+                baseStamp = base.getFileName().toString().substring(basePrefix.length()).replace(".dat", "");
+                parseStamp(baseStamp);
+                return;
+            }
+            catch (IOException e)
+            {
+                log.warn("Ignoring unreadable backup base {}", base, e);
+            }
+        }
+        baseStamp = null;
+        baseBits = null;
+    }
+
+    private void writeBase(int[] items, long now) throws IOException
+    {
+        String stamp = stamp(now);
+        write(dir.resolve(basePrefix + stamp + ".dat"), items);
+        baseStamp = stamp;
+        baseBits = bitsOf(items);
+    }
+
+    /**
+     * Deletes bases and deltas older than the retention window, always keeping the current base and its deltas.
+     */
+    private void prune(long now) throws IOException
+    {
+        List<Path> stale = new ArrayList<>();
+        for (Path p : list(basePrefix))
+        {
+            String stamp = p.getFileName().toString().substring(basePrefix.length()).replace(".dat", "");
+            if (!stamp.equals(baseStamp) && isExpired(stamp, now))
+            {
+                stale.add(p);
+            }
+        }
+        for (Path p : list(deltaPrefix))
+        {
+            String[] stamps = p.getFileName().toString().substring(deltaPrefix.length()).replace(".dat", "")
+                    .split("\\.");
+            if (!stamps[0].equals(baseStamp) && (stamps.length < 2 || isExpired(stamps[1], now)))
+            {
+                stale.add(p);
+            }
+        }
+        for (Path p : stale)
+        {
+            Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * @return files in the backup directory starting with {@code prefix}, newest first
+     */
+    private List<Path> list(String prefix) throws IOException
+    {
+        if (!Files.isDirectory(dir))
+        {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(dir))
+        {
+            return files
+                    .filter(p -> p.getFileName().toString().startsWith(prefix))
+                    .filter(p -> p.getFileName().toString().endsWith(".dat"))
+                    .sorted((a, b) -> b.getFileName().toString().compareTo(a.getFileName().toString()))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static void write(Path file, int[] items) throws IOException
+    {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ItemSnapshotFile.write(tmp, items);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static boolean isExpired(String stamp, long now)
+    {
+        try
+        {
+            return now - parseStamp(stamp) > RETENTION_MS;
+        }
+        catch (IOException e)
+        {
+            // not one of ours
+            return false;
+        }
+    }
+
+    private static String stamp(long time)
+    {
+        return new SimpleDateFormat(STAMP_FORMAT).format(new Date(time));
+    }
+
+    private static long parseStamp(String stamp) throws IOException
+    {
+        try
+        {
+            return new SimpleDateFormat(STAMP_FORMAT).parse(stamp).getTime();
+        }
+        catch (ParseException e)
+        {
+            throw new IOException("Bad backup timestamp " + stamp, e);
+        }
+    }
+
+    private static long[] bitsOf(int[] items)
+    {
+        int max = Arrays.stream(items).max().orElse(-1);
+        long[] bits = new long[(max >> 6) + 1];
+        for (int itemId : items)
+        {
+            bits[itemId >> 6] |= 1L << itemId;
+        }
+        return bits;
+    }
+
+    private static boolean contains(long[] bits, int itemId)
+    {
+        int word = itemId >> 6;
+        return itemId >= 0 && word < bits.length && (bits[word] & (1L << itemId)) != 0;
+    }
+}
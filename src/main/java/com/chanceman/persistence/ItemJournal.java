@@ -0,0 +1,192 @@
+package com.chanceman.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of item IDs.
+ * Each record is the item ID followed by a CRC32 of that ID, so a record torn by a crash
+ * is detected on replay and cut off instead of being read back as garbage.
+ * Records are written in batches, each with a single write and fsync.
+ */
+@Slf4j
+public class ItemJournal implements Closeable
+{
+    static final int RECORD_SIZE = 8;
+
+    private final Path file;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private int records = 0;
+    private int unsynced = 0;
+
+    public ItemJournal(Path file)
+    {
+        this.file = file;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return the number of records currently in the journal
+     */
+    public int size()
+    {
+        return records;
+    }
+
+    /**
+     * Feeds every intact record to the consumer, in append order.
+     * Anything after the first corrupt or partial record is truncated away.
+     *
+     * @param consumer receives each journaled item ID
+     * @return the number of records replayed
+     */
+    public int replay(IntConsumer consumer) throws IOException
+    {
+        records = 0;
+        if (!Files.exists(file))
+        {
+            return 0;
+        }
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long size = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+            while (buf.hasRemaining() && ch.read(buf) >= 0)
+            {
+                // keep reading until the buffer is full or EOF
+            }
+            buf.flip();
+
+            long valid = 0;
+            while (buf.remaining() >= RECORD_SIZE)
+            {
+                int itemId = buf.getInt();
+                int sum = buf.getInt();
+                if (checksum(itemId) != sum)
+                {
+                    break;
+                }
+                consumer.accept(itemId);
+                records++;
+                valid += RECORD_SIZE;
+            }
+
+            if (valid < size)
+            {
+                log.warn("Discarding {} corrupt trailing bytes from {}", size - valid, file);
+                ch.truncate(valid);
+                ch.force(true);
+                // an append channel left past the cut would write after a gap of zeros
+                if (channel != null && channel.isOpen())
+                {
+                    channel.position(valid);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Appends a batch of records with a single write and a single fsync.
+     *
+     * @param itemIds the IDs to append, in order
+     */
+    public void appendAll(int[] itemIds) throws IOException
+    {
+        if (itemIds.length == 0)
+        {
+            return;
+        }
+        FileChannel ch = open();
+        ByteBuffer batch = ByteBuffer.allocate(itemIds.length * RECORD_SIZE);
+        for (int itemId : itemIds)
+        {
+            batch.putInt(itemId).putInt(checksum(itemId));
+        }
+        batch.flip();
+        while (batch.hasRemaining())
+        {
+            ch.write(batch);
+        }
+        records += itemIds.length;
+        unsynced += itemIds.length;
+        sync();
+    }
+
+    /**
+     * Forces any appended but not yet synced records to disk.
+     */
+    public void sync() throws IOException
+    {
+        if (channel != null && unsynced > 0)
+        {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    /**
+     * Empties the journal, typically right after its contents were folded into a snapshot.
+     */
+    public void reset() throws IOException
+    {
+        FileChannel ch = open();
+        ch.truncate(0);
+        ch.force(true);
+        records = 0;
+        unsynced = 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel == null)
+        {
+            return;
+        }
+        try
+        {
+            sync();
+        }
+        finally
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private FileChannel open() throws IOException
+    {
+        if (channel == null || !channel.isOpen())
+        {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    private int checksum(int itemId)
+    {
+        crc.reset();
+        crc.update(itemId >>> 24);
+        crc.update(itemId >>> 16);
+        crc.update(itemId >>> 8);
+        crc.update(itemId);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,147 @@
+package com.chanceman.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of an item set.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int    magic ("CMIS")
+ *   int    version
+ *   int    count          number of item IDs
+ *   int    words          length of the bitmap in longs
+ *   long[] bitmap         bit n set if item n is in the set
+ *   int[]  order          the item IDs in the order they were added
+ *   int    crc            CRC32 of everything above
+ * </pre>
+ */
+final class ItemSnapshotFile
+{
+    private static final int MAGIC = 0x434D4953;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Contents of a snapshot file.
+     */
+    static final class Contents
+    {
+        final long[] bits;
+        final int[] order;
+
+        Contents(long[] bits, int[] order)
+        {
+            this.bits = bits;
+            this.order = order;
+        }
+    }
+
+    private ItemSnapshotFile()
+    {
+    }
+
+    /**
+     * Writes {@code order} to {@code file}, replacing it, and forces it to disk.
+     */
+    static void write(Path file, int[] order) throws IOException
+    {
+        int max = -1;
+        for (int itemId : order)
+        {
+            max = Math.max(max, itemId);
+        }
+        long[] bits = new long[(max >> 6) + 1];
+        for (int itemId : order)
+        {
+            bits[itemId >> 6] |= 1L << itemId;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + bits.length * Long.BYTES
+                + order.length * Integer.BYTES + Integer.BYTES);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(order.length).putInt(bits.length);
+        buf.asLongBuffer().put(bits);
+        buf.position(buf.position() + bits.length * Long.BYTES);
+        buf.asIntBuffer().put(order);
+        buf.position(buf.position() + order.length * Integer.BYTES);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buf.hasRemaining())
+            {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+    }
+
+    /**
+     * Reads and validates a snapshot written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read, is from an unknown version, or fails its checksum
+     */
+    static Contents read(Path file) throws IOException
+    {
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            long size = ch.size();
+            if (size < HEADER_SIZE + Integer.BYTES || size > Integer.MAX_VALUE)
+            {
+                throw new IOException("Snapshot " + file + " has invalid size " + size);
+            }
+            // read into the heap rather than mapped: on Windows a mapping keeps the file locked until it is
+            // garbage collected, and the next compaction has to replace this file
+            buf = ByteBuffer.allocate((int) size);
+            while (buf.hasRemaining() && ch.read(buf) >= 0)
+            {
+                // keep reading until the buffer is full or EOF
+            }
+            buf.flip();
+        }
+
+        int magic = buf.getInt();
+        int version = buf.getInt();
+        int count = buf.getInt();
+        int words = buf.getInt();
+        if (magic != MAGIC)
+        {
+            throw new IOException("Snapshot " + file + " has bad magic " + Integer.toHexString(magic));
+        }
+        if (version != VERSION)
+        {
+            throw new IOException("Snapshot " + file + " has unsupported version " + version);
+        }
+        long expected = HEADER_SIZE + (long) words * Long.BYTES + (long) count * Integer.BYTES + Integer.BYTES;
+        if (count < 0 || words < 0 || expected != buf.limit())
+        {
+            throw new IOException("Snapshot " + file + " is truncated or malformed");
+        }
+
+        int crcOffset = buf.limit() - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, crcOffset);
+        if ((int) crc.getValue() != buf.getInt(crcOffset))
+        {
+            throw new IOException("Snapshot " + file + " failed its checksum");
+        }
+
+        long[] bits = new long[words];
+        buf.asLongBuffer().get(bits);
+        buf.position(buf.position() + words * Long.BYTES);
+        int[] order = new int[count];
+        buf.asIntBuffer().get(order);
+        return new Contents(bits, order);
+    }
+}
@@ -0,0 +1,152 @@
+package com.chanceman.persistence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Cached result of scanning the item compositions, so the rollable item list does not have to be
+ * rebuilt from scratch on every login.
+ * Version 1 files were keyed by the client revision rather than the item count and are rejected.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int    magic ("CMIU")
+ *   int    version
+ *   int    itemCount      number of item definitions in the cache the flags were read from
+ *   int    filterHash     hash of the filter config the universe was derived with
+ *   int    words          length of each flag bitmap in longs
+ *   long[] tradeable      bit n set if item n is tradeable
+ *   long[] members        bit n set if item n is members-only
+ *   int    count          number of IDs in the universe
+ *   int[]  universe       rollable item IDs, ascending
+ *   int    crc            CRC32 of everything above
+ * </pre>
+ */
+public final class ItemUniverseCacheFile
+{
+    private static final int MAGIC = 0x434D4955;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+
+    /**
+     * Contents of a cache file.
+     */
+    public static final class Contents
+    {
+        public final int itemCount;
+        public final int filterHash;
+        public final long[] tradeable;
+        public final long[] members;
+        public final int[] universe;
+
+        public Contents(int itemCount, int filterHash, long[] tradeable, long[] members, int[] universe)
+        {
+            if (tradeable.length != members.length)
+            {
+                throw new IllegalArgumentException("Flag bitmaps differ in length");
+            }
+            this.itemCount = itemCount;
+            this.filterHash = filterHash;
+            this.tradeable = tradeable;
+            this.members = members;
+            this.universe = universe;
+        }
+    }
+
+    private ItemUniverseCacheFile()
+    {
+    }
+
+    /**
+     * Writes {@code contents} to a temporary file and moves it over {@code file}.
+     */
+    public static void write(Path file, Contents contents) throws IOException
+    {
+        int words = contents.tradeable.length;
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + 2 * words * Long.BYTES
+                + Integer.BYTES + contents.universe.length * Integer.BYTES + Integer.BYTES);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(contents.itemCount).putInt(contents.filterHash).putInt(words);
+        buf.asLongBuffer().put(contents.tradeable);
+        buf.position(buf.position() + words * Long.BYTES);
+        buf.asLongBuffer().put(contents.members);
+        buf.position(buf.position() + words * Long.BYTES);
+        buf.putInt(contents.universe.length);
+        buf.asIntBuffer().put(contents.universe);
+        buf.position(buf.position() + contents.universe.length * Integer.BYTES);
+
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (buf.hasRemaining())
+            {
+                ch.write(buf);
+            }
+        }
+        // losing the cache only costs a rescan, so no fsync
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads and validates a cache file written by {@link #write}.
+     *
+     * @throws IOException if the file cannot be read, is from an unknown version, or fails its checksum
+     */
+    public static Contents read(Path file) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buf.limit() < HEADER_SIZE + 2 * Integer.BYTES)
+        {
+            throw new IOException("Universe cache " + file + " is truncated");
+        }
+
+        int magic = buf.getInt();
+        int version = buf.getInt();
+        if (magic != MAGIC || version != VERSION)
+        {
+            throw new IOException("Universe cache " + file + " has an unknown format");
+        }
+        int crcOffset = buf.limit() - Integer.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(buf.array(), 0, crcOffset);
+        if ((int) crc.getValue() != buf.getInt(crcOffset))
+        {
+            throw new IOException("Universe cache " + file + " failed its checksum");
+        }
+
+        int itemCount = buf.getInt();
+        int filterHash = buf.getInt();
+        int words = buf.getInt();
+        if (words < 0 || HEADER_SIZE + 2L * words * Long.BYTES + Integer.BYTES > crcOffset)
+        {
+            throw new IOException("Universe cache " + file + " is malformed");
+        }
+        long[] tradeable = new long[words];
+        buf.asLongBuffer().get(tradeable);
+        buf.position(buf.position() + words * Long.BYTES);
+        long[] members = new long[words];
+        buf.asLongBuffer().get(members);
+        buf.position(buf.position() + words * Long.BYTES);
+
+        int count = buf.getInt();
+        if (count < 0 || buf.position() + (long) count * Integer.BYTES != crcOffset)
+        {
+            throw new IOException("Universe cache " + file + " is malformed");
+        }
+        int[] universe = new int[count];
+        buf.asIntBuffer().get(universe);
+        return new Contents(itemCount, filterHash, tradeable, members, universe);
+    }
+}
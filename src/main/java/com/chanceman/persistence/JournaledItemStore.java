@@ -0,0 +1,393 @@
+package com.chanceman.persistence;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Persists a growing set of item IDs as a binary snapshot ({@link ItemSnapshotFile}) plus an
+ * append-only {@link ItemJournal}. Each new ID costs one small journal record, and a batch of IDs
+ * costs one write; once the journal grows past {@value #COMPACT_THRESHOLD} records it is folded
+ * into a fresh snapshot (backed up by a {@link DeltaBackupStore}) and emptied. Loading reads the
+ * snapshot and replays the journal on top of it.
+ *
+ * Callers identify a store by its JSON path (e.g. {@code chanceman_unlocked.json}). The binary
+ * snapshot ({@code .dat}) and journal ({@code .journal}) live next to it. The JSON file itself is
+ * only a human-readable export, refreshed on every compaction; it is read once to migrate saves
+ * that predate the binary format.
+ *
+ * Methods are synchronized so a store can be shared between threads; the plugin drives each store
+ * from its own single-thread file executor.
+ */
+@Slf4j
+public class JournaledItemStore
+{
+    private static final int COMPACT_THRESHOLD = 512;
+
+    private ItemJournal journal;
+    private DeltaBackupStore backups;
+
+    /**
+     * Loads the snapshot for {@code file} and replays its journal on top of it.
+     * If only a legacy JSON file exists it is imported and immediately rewritten as a binary snapshot.
+     * If the snapshot is corrupt it is kept aside as {@code .dat.corrupt} and rebuilt from the latest
+     * backup, or failing that from the JSON export, or failing that from the journal alone.
+     *
+     * @param file the JSON path identifying the store
+     * @param gson the Gson instance used to read a legacy JSON file
+     * @return the stored IDs in insertion order, without duplicates; empty if nothing is stored yet
+     */
+    public synchronized int[] load(Path file, Gson gson) throws IOException
+    {
+        Path dat = snapshotPath(file);
+        boolean rewrite = false;
+        long[] bits = new long[0];
+        int[] order;
+        if (Files.exists(dat))
+        {
+            try
+            {
+                ItemSnapshotFile.Contents contents = ItemSnapshotFile.read(dat);
+                bits = contents.bits;
+                order = contents.order;
+            }
+            catch (IOException e)
+            {
+                log.error("Snapshot {} is unreadable, restoring from backups", dat, e);
+                keepCorrupt(dat);
+                order = restore(file, gson);
+                rewrite = true;
+            }
+        }
+        else
+        {
+            order = readJson(file, gson);
+            if (Files.exists(file))
+            {
+                log.info("Migrating {} to binary snapshot {}", file.getFileName(), dat.getFileName());
+                rewrite = true;
+            }
+        }
+
+        IdList items = new IdList(bits, order);
+        int replayed = journalFor(file).replay(items::add);
+        if (replayed > 0)
+        {
+            log.debug("Replayed {} journal records onto {}", replayed, dat.getFileName());
+        }
+
+        int[] result = items.toArray();
+        if (rewrite)
+        {
+            writeSnapshot(file, result, gson);
+        }
+        return result;
+    }
+
+    /**
+     * Moves an unreadable snapshot out of the way, so rebuilding it does not destroy it.
+     */
+    private static void keepCorrupt(Path dat)
+    {
+        try
+        {
+            Files.move(dat, dat.resolveSibling(dat.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not keep a copy of {}", dat.getFileName(), e);
+        }
+    }
+
+    /**
+     * @return the newest state that can still be read from the backups or the JSON export,
+     *         or nothing if neither can be read
+     */
+    private int[] restore(Path file, Gson gson)
+    {
+        try
+        {
+            return backupsFor(file).restoreLatest();
+        }
+        catch (IOException e)
+        {
+            log.error("Could not restore {} from backups, trying its JSON export", file.getFileName(), e);
+        }
+        try
+        {
+            if (Files.exists(file))
+            {
+                int[] order = readJson(file, gson);
+                log.warn("Restored {} items from the JSON export {}", order.length, file.getFileName());
+                return order;
+            }
+        }
+        catch (IOException | JsonParseException e)
+        {
+            log.error("Could not read the JSON export {}", file.getFileName(), e);
+        }
+        log.error("No readable snapshot, backup or export for {}; starting from the journal alone,"
+                + " earlier items are lost", file.getFileName());
+        return new int[0];
+    }
+
+    /**
+     * @return true if neither a snapshot, a legacy JSON file nor a journal exists for {@code file}
+     */
+    public boolean isEmpty(Path file)
+    {
+        return !Files.exists(snapshotPath(file)) && !Files.exists(file) && !Files.exists(journalPath(file));
+    }
+
+    /**
+     * Journals a batch of new item IDs with one write and one fsync,
+     * compacting into a snapshot (and recording at most one backup) if the journal is large enough.
+     *
+     * @param file    the JSON path identifying the store
+     * @param itemIds the IDs to record, in order
+     * @param current supplies the full current set in insertion order, or null if it no longer
+     *                belongs to {@code file}; only called if a compaction is due
+     * @param gson    the Gson instance used to write the JSON export
+     */
+    public synchronized void appendAll(Path file, int[] itemIds, Supplier<int[]> current, Gson gson)
+            throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        ItemJournal j = journalFor(file);
+        j.appendAll(itemIds);
+        if (j.size() >= COMPACT_THRESHOLD)
+        {
+            int[] items = current.get();
+            if (items != null)
+            {
+                writeSnapshot(file, items, gson);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code items} as the new binary snapshot, empties the journal, whose records are all
+     * contained in the snapshot, records a backup in {@code backups/} and refreshes the JSON export.
+     */
+    public synchronized void writeSnapshot(Path file, int[] items, Gson gson) throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        Path dat = snapshotPath(file);
+
+        // 1) write the new snapshot to .tmp and atomically replace .dat with it
+        Path tmp = dat.resolveSibling(dat.getFileName() + ".tmp");
+        ItemSnapshotFile.write(tmp, items);
+        safeMove(tmp, dat, StandardCopyOption.ATOMIC_MOVE);
+
+        // 2) everything journaled so far is now in the snapshot
+        journalFor(file).reset();
+
+        // 3) back it up as a base or a delta against the current base
+        try
+        {
+            backupsFor(file).record(items);
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not back up {}", dat.getFileName(), e);
+        }
+
+        // 4) refresh the human-readable export; losing it is harmless
+        try
+        {
+            exportJson(file, items, gson);
+        }
+        catch (IOException e)
+        {
+            log.warn("Could not export {}", file.getFileName(), e);
+        }
+    }
+
+    /**
+     * Forces outstanding journal records to disk.
+     */
+    public synchronized void sync() throws IOException
+    {
+        if (journal != null)
+        {
+            journal.sync();
+        }
+    }
+
+    /**
+     * Syncs and closes the open journal, if any.
+     */
+    public synchronized void close()
+    {
+        if (journal == null)
+        {
+            return;
+        }
+        try
+        {
+            journal.close();
+        }
+        catch (IOException e)
+        {
+            log.error("Error closing journal {}", journal.getFile(), e);
+        }
+        journal = null;
+    }
+
+    private static int[] readJson(Path file, Gson gson) throws IOException
+    {
+        if (!Files.exists(file))
+        {
+            return new int[0];
+        }
+        try (Reader r = Files.newBufferedReader(file))
+        {
+            List<Integer> loaded = gson.fromJson(r, new TypeToken<List<Integer>>() {}.getType());
+            if (loaded == null)
+            {
+                return new int[0];
+            }
+            return loaded.stream().filter(Objects::nonNull).mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static void exportJson(Path file, int[] items, Gson gson) throws IOException
+    {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(tmp))
+        {
+            gson.toJson(items, w);
+        }
+        safeMove(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private ItemJournal journalFor(Path file)
+    {
+        Path path = journalPath(file);
+        if (journal != null && journal.getFile().equals(path))
+        {
+            return journal;
+        }
+        close();
+        journal = new ItemJournal(path);
+        return journal;
+    }
+
+    private DeltaBackupStore backupsFor(Path file)
+    {
+        Path dir = file.getParent().resolve("backups");
+        if (backups == null || !backups.getDir().equals(dir))
+        {
+            backups = new DeltaBackupStore(dir, baseName(file));
+        }
+        return backups;
+    }
+
+    private static Path journalPath(Path file)
+    {
+        return sibling(file, ".journal");
+    }
+
+    private static Path snapshotPath(Path file)
+    {
+        return sibling(file, ".dat");
+    }
+
+    private static Path sibling(Path file, String extension)
+    {
+        return file.resolveSibling(baseName(file) + extension);
+    }
+
+    private static String baseName(Path file)
+    {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".json"))
+        {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        return name;
+    }
+
+    /**
+     * Atomically moves source→target, but if ATOMIC_MOVE fails retries a normal move with REPLACE_EXISTING.
+     */
+    private static void safeMove(Path source, Path target, CopyOption... opts) throws IOException
+    {
+        try
+        {
+            Files.move(source, target, opts);
+        }
+        catch (AtomicMoveNotSupportedException | AccessDeniedException ex)
+        {
+            // retry without ATOMIC_MOVE but with REPLACE_EXISTING
+            Set<CopyOption> fallback = new HashSet<>(Arrays.asList(opts));
+            fallback.remove(StandardCopyOption.ATOMIC_MOVE);
+            fallback.add(StandardCopyOption.REPLACE_EXISTING);
+            Files.move(source, target, fallback.toArray(new CopyOption[0]));
+        }
+    }
+
+    /**
+     * Insertion-ordered, duplicate-free list of IDs used while assembling a load.
+     */
+    private static final class IdList
+    {
+        private long[] bits;
+        private int[] ids;
+        private int size;
+
+        IdList(long[] bits, int[] order)
+        {
+            this.bits = bits.clone();
+            this.ids = Arrays.copyOf(order, Math.max(16, order.length + 16));
+            // a snapshot bitmap is authoritative; a legacy import has none and may contain duplicates
+            if (bits.length == 0)
+            {
+                for (int itemId : order)
+                {
+                    add(itemId);
+                }
+            }
+            else
+            {
+                this.size = order.length;
+            }
+        }
+
+        void add(int itemId)
+        {
+            if (itemId < 0)
+            {
+                return;
+            }
+            int word = itemId >> 6;
+            if (word >= bits.length)
+            {
+                bits = Arrays.copyOf(bits, word + 1);
+            }
+            if ((bits[word] & (1L << itemId)) != 0)
+            {
+                return;
+            }
+            bits[word] |= 1L << itemId;
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = itemId;
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.chanceman.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the rolls made for one account, together with the seed of the account's roll stream.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int    magic ("CMRA")
+ *   int    version
+ *   long   seed           seed of the account's roll stream
+ *   long   baselineHash   hash of the items that were already unlocked when the log was created
+ *   int    crc            CRC32 of the header
+ *   then one record per roll:
+ *   long   position       position in the roll stream the result was drawn from
+ *   long   candidateHash  hash of the locked items the result was drawn from
+ *   int    candidateCount number of those items
+ *   int    result         the item that was unlocked
+ *   int    flags          {@link #WEIGHTED} if the draw was weighted
+ *   int    source         the item whose roll this was, or {@link #NO_SOURCE} for a manual roll
+ *   int    crc            CRC32 of the record
+ * </pre>
+ * Like {@link ItemJournal}, a record torn by a crash is cut off on load. A log whose header is damaged
+ * is moved aside and replaced by a fresh one, so the account can still roll.
+ *
+ * A record is the commit point of a roll: it acknowledges the queued roll and records the item it
+ * unlocks in one checksummed write, so a roll is either complete or still pending after a crash.
+ */
+@Slf4j
+public class RollAuditLog implements Closeable
+{
+    /**
+     * Set in {@link Entry#flags} if the result was drawn by weight rather than uniformly.
+     */
+    public static final int WEIGHTED = 1;
+    /**
+     * {@link Entry#source} of a roll that was not queued for an item, e.g. one requested from the panel.
+     */
+    public static final int NO_SOURCE = -1;
+
+    private static final int MAGIC = 0x434D5241;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    static final int RECORD_SIZE = 36;
+
+    /**
+     * One roll.
+     */
+    public static final class Entry
+    {
+        public final long position;
+        public final long candidateHash;
+        public final int candidateCount;
+        public final int result;
+        public final int flags;
+        public final int source;
+
+        public Entry(long position, long candidateHash, int candidateCount, int result, int flags, int source)
+        {
+            this.position = position;
+            this.candidateHash = candidateHash;
+            this.candidateCount = candidateCount;
+            this.result = result;
+            this.flags = flags;
+            this.source = source;
+        }
+
+        /**
+         * @return this draw, attributed to the roll of {@code sourceItemId}
+         */
+        public Entry withSource(int sourceItemId)
+        {
+            return new Entry(position, candidateHash, candidateCount, result, flags, sourceItemId);
+        }
+
+        public boolean isWeighted()
+        {
+            return (flags & WEIGHTED) != 0;
+        }
+    }
+
+    private final Path file;
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private long seed;
+    private long baselineHash;
+    private int records = 0;
+
+    public RollAuditLog(Path file)
+    {
+        this.file = file;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return the seed read or created by {@link #load}
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * @return the hash of the items that were unlocked before the first roll was logged
+     */
+    public long getBaselineHash()
+    {
+        return baselineHash;
+    }
+
+    /**
+     * @return the number of records currently in the log
+     */
+    public int size()
+    {
+        return records;
+    }
+
+    /**
+     * Reads the header and feeds every intact record to the consumer, in append order.
+     * A missing file is created with a fresh random seed. Anything after the first corrupt or
+     * partial record is truncated away. If the header is damaged, the file is kept next to the log
+     * with a {@code .corrupt} suffix and a new, empty log is created in its place.
+     *
+     * @param unlockedHash gives the hash of the currently unlocked items; only called when the file is created
+     * @throws IOException if the file cannot be read or created
+     */
+    public void load(Consumer<Entry> consumer, LongSupplier unlockedHash) throws IOException
+    {
+        records = 0;
+        if (!Files.exists(file) || Files.size(file) == 0)
+        {
+            create(unlockedHash.getAsLong());
+            return;
+        }
+
+        String damage = null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE))
+        {
+            long size = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+            while (buf.hasRemaining() && ch.read(buf) >= 0)
+            {
+                // keep reading until the buffer is full or EOF
+            }
+            buf.flip();
+
+            damage = readHeader(buf);
+            if (damage == null)
+            {
+                long valid = HEADER_SIZE;
+                while (buf.remaining() >= RECORD_SIZE)
+                {
+                    int start = buf.position();
+                    Entry entry = new Entry(buf.getLong(), buf.getLong(), buf.getInt(), buf.getInt(), buf.getInt(),
+                            buf.getInt());
+                    if (checksum(buf, start, RECORD_SIZE - 4) != buf.getInt())
+                    {
+                        break;
+                    }
+                    consumer.accept(entry);
+                    records++;
+                    valid += RECORD_SIZE;
+                }
+
+                if (valid < size)
+                {
+                    log.warn("Discarding {} corrupt trailing bytes from {}", size - valid, file);
+                    ch.truncate(valid);
+                    ch.force(true);
+                }
+            }
+        }
+
+        if (damage != null)
+        {
+            Path corrupt = file.resolveSibling(file.getFileName() + ".corrupt");
+            log.error("{}: {}; moving it to {} and starting a new roll log", damage, file, corrupt);
+            Files.move(file, corrupt, StandardCopyOption.REPLACE_EXISTING);
+            create(unlockedHash.getAsLong());
+        }
+    }
+
+    /**
+     * Reads the seed and baseline hash from the header at the start of {@code buf}.
+     *
+     * @return null if the header is intact, otherwise what is wrong with it
+     */
+    private String readHeader(ByteBuffer buf)
+    {
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC)
+        {
+            return "Not a roll log";
+        }
+        int version = buf.getInt();
+        if (version != VERSION)
+        {
+            return "Unsupported roll log version " + version;
+        }
+        seed = buf.getLong();
+        baselineHash = buf.getLong();
+        if (checksum(buf, 0, HEADER_SIZE - 4) != buf.getInt())
+        {
+            return "Roll log header checksum mismatch";
+        }
+        return null;
+    }
+
+    /**
+     * Appends a record and forces it to disk.
+     */
+    public void append(Entry entry) throws IOException
+    {
+        append(Collections.singletonList(entry));
+    }
+
+    /**
+     * Appends records with a single write and forces them to disk together.
+     */
+    public void append(List<Entry> entries) throws IOException
+    {
+        FileChannel ch = open();
+        write(ch, encode(entries));
+        ch.force(false);
+        records += entries.size();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (channel != null)
+        {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void create(long baseline) throws IOException
+    {
+        Files.createDirectories(file.getParent());
+        seed = new SecureRandom().nextLong();
+        baselineHash = baseline;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            write(ch, header());
+            ch.force(true);
+        }
+    }
+
+    private ByteBuffer header()
+    {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(seed).putLong(baselineHash);
+        header.putInt(checksum(header, 0, HEADER_SIZE - 4));
+        header.flip();
+        return header;
+    }
+
+    private ByteBuffer encode(List<Entry> entries)
+    {
+        ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * entries.size());
+        for (Entry entry : entries)
+        {
+            int start = batch.position();
+            batch.putLong(entry.position)
+                    .putLong(entry.candidateHash)
+                    .putInt(entry.candidateCount)
+                    .putInt(entry.result)
+                    .putInt(entry.flags)
+                    .putInt(entry.source);
+            batch.putInt(checksum(batch, start, RECORD_SIZE - 4));
+        }
+        batch.flip();
+        return batch;
+    }
+
+    private static void write(FileChannel ch, ByteBuffer buf) throws IOException
+    {
+        while (buf.hasRemaining())
+        {
+            ch.write(buf);
+        }
+    }
+
+    private FileChannel open() throws IOException
+    {
+        if (channel == null || !channel.isOpen())
+        {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+        return channel;
+    }
+
+    private int checksum(ByteBuffer buf, int offset, int length)
+    {
+        crc.reset();
+        for (int i = offset; i < offset + length; i++)
+        {
+            crc.update(buf.get(i));
+        }
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,106 @@
+package com.chanceman.persistence;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Buffers newly added item IDs in memory so a burst of mutations (a loot pile, a looting bag)
+ * is persisted as one batch instead of one write per item. Callers {@link #flush} on the
+ * game tick boundary and before logout/shutdown.
+ *
+ * IDs are grouped by the file they were added for, so a flush that runs after an account
+ * switch still lands in the previous account's file.
+ */
+@Slf4j
+public class WriteCoalescer
+{
+    /**
+     * Persists one batch of IDs for a single file. Runs on the file executor.
+     */
+    @FunctionalInterface
+    public interface BatchWriter
+    {
+        void write(Path file, int[] itemIds) throws IOException;
+    }
+
+    private final Map<Path, Batch> pending = new LinkedHashMap<>();
+
+    /**
+     * Marks {@code itemId} as dirty for {@code file}.
+     */
+    public synchronized void add(Path file, int itemId)
+    {
+        pending.computeIfAbsent(file, f -> new Batch()).add(itemId);
+    }
+
+    /**
+     * @return true if there are IDs waiting to be flushed
+     */
+    public synchronized boolean isDirty()
+    {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Hands every pending batch to {@code writer} on {@code executor} and clears the dirty state.
+     * Does nothing if nothing changed since the last flush.
+     */
+    public void flush(ExecutorService executor, BatchWriter writer)
+    {
+        Map<Path, int[]> batches;
+        synchronized (this)
+        {
+            if (pending.isEmpty())
+            {
+                return;
+            }
+            batches = new LinkedHashMap<>();
+            for (Map.Entry<Path, Batch> entry : pending.entrySet())
+            {
+                batches.put(entry.getKey(), entry.getValue().toArray());
+            }
+            pending.clear();
+        }
+
+        executor.submit(() ->
+        {
+            for (Map.Entry<Path, int[]> entry : batches.entrySet())
+            {
+                try
+                {
+                    writer.write(entry.getKey(), entry.getValue());
+                }
+                catch (IOException e)
+                {
+                    log.error("Error writing {} items to {}", entry.getValue().length, entry.getKey(), e);
+                }
+            }
+        });
+    }
+
+    private static final class Batch
+    {
+        private int[] ids = new int[16];
+        private int size = 0;
+
+        void add(int itemId)
+        {
+            if (size == ids.length)
+            {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = itemId;
+        }
+
+        int[] toArray()
+        {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.chanceman.ui;
 
 import com.chanceman.drops.NpcDropData;
 import com.chanceman.drops.DropItem;
+import com.chanceman.managers.ItemStateStore;
 import com.chanceman.managers.RolledItemsManager;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -87,7 +88,7 @@ public class MusicWidgetController
                 .collect(Collectors.toList());
         drops = WidgetUtils.dedupeAndSort(drops);
 
-        Set<Integer> rolledIds = rolledItemsManager.getRolledItems();
+        ItemStateStore.Snapshot rolledIds = rolledItemsManager.getRolledItems();
         int totalDrops = drops.size();
         int rolledCount = (int) drops.stream()
                 .filter(d -> rolledIds.contains(d.getItemId()))
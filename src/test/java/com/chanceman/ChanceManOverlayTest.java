@@ -0,0 +1,91 @@
+package com.chanceman;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.function.Consumer;
+import net.runelite.api.Client;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Test;
+
+public class ChanceManOverlayTest
+{
+	private static final int WARMUP_FRAMES = 20_000;
+	private static final int MEASURED_FRAMES = 2_000;
+	// boxed once, so the client stub itself does not allocate
+	private static final Integer VIEWPORT_OFFSET = 0;
+	private static final Integer VIEWPORT_WIDTH = 800;
+
+	@Test
+	public void renderingAFrameAllocatesNothing() throws Exception
+	{
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		ChanceManOverlay overlay = new ChanceManOverlay(client(), null)
+		{
+			@Override
+			void loadIcon(int itemId, Consumer<BufferedImage> onLoaded)
+			{
+				// every third icon never loads, so the placeholder is drawn as well
+				if (itemId % 3 != 0)
+				{
+					onLoaded.accept(new BufferedImage(36, 32, BufferedImage.TYPE_INT_ARGB));
+				}
+			}
+		};
+		setField(overlay, "config", Proxy.newProxyInstance(ChanceManConfig.class.getClassLoader(),
+			new Class<?>[]{ChanceManConfig.class}, (proxy, method, args) -> false));
+
+		int[] next = {0};
+		overlay.startRollAnimation(1, 600_000, () -> next[0]++);
+		Graphics2D g = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB).createGraphics();
+		for (int i = 0; i < WARMUP_FRAMES; i++)
+		{
+			overlay.render(g);
+		}
+
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < MEASURED_FRAMES; i++)
+		{
+			overlay.render(g);
+		}
+		long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		g.dispose();
+
+		// the JVM may account a stray one-off allocation to the thread; anything per frame would add up
+		// to at least MEASURED_FRAMES bytes
+		assertTrue("allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames",
+			allocated < MEASURED_FRAMES);
+	}
+
+	private static Client client()
+	{
+		return (Client) Proxy.newProxyInstance(Client.class.getClassLoader(), new Class<?>[]{Client.class},
+			(proxy, method, args) ->
+			{
+				switch (method.getName())
+				{
+					case "getViewportXOffset":
+					case "getViewportYOffset":
+						return VIEWPORT_OFFSET;
+					case "getViewportWidth":
+						return VIEWPORT_WIDTH;
+					default:
+						return null;
+				}
+			});
+	}
+
+	private static void setField(Object target, String name, Object value) throws ReflectiveOperationException
+	{
+		Field field = ChanceManOverlay.class.getDeclaredField(name);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+}
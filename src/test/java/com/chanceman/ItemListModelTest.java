@@ -0,0 +1,209 @@
+package com.chanceman;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ItemListModelTest
+{
+	private ItemListModel model;
+	// what a list view would show if it only followed the events
+	private List<Integer> mirror;
+	private List<String> events;
+
+	@Before
+	public void setUp()
+	{
+		model = new ItemListModel();
+		mirror = new ArrayList<>();
+		events = new ArrayList<>();
+		model.addListDataListener(new ListDataListener()
+		{
+			@Override
+			public void intervalAdded(ListDataEvent e)
+			{
+				events.add("+" + e.getIndex0() + ".." + e.getIndex1());
+				for (int i = e.getIndex0(); i <= e.getIndex1(); i++)
+				{
+					mirror.add(i, model.getElementAt(i));
+				}
+			}
+
+			@Override
+			public void intervalRemoved(ListDataEvent e)
+			{
+				events.add("-" + e.getIndex0() + ".." + e.getIndex1());
+				mirror.subList(e.getIndex0(), e.getIndex1() + 1).clear();
+			}
+
+			@Override
+			public void contentsChanged(ListDataEvent e)
+			{
+				throw new AssertionError("unexpected contentsChanged");
+			}
+		});
+	}
+
+	private void setItems(int... next)
+	{
+		model.setItems(next);
+		assertArrayEquals(next, model.toIntArray());
+		assertEquals(model.getSize(), mirror.size());
+		for (int i = 0; i < next.length; i++)
+		{
+			assertEquals(next[i], (int) mirror.get(i));
+		}
+	}
+
+	private static int[] range(int from, int to)
+	{
+		return IntStream.range(from, to).toArray();
+	}
+
+	@Test
+	public void prependAllFiresOneEvent()
+	{
+		model.prependAll(new int[]{3, 4});
+		model.prependAll(range(100, 140));
+		model.prependAll(new int[0]);
+
+		assertEquals(Arrays.asList("+0..1", "+0..39"), events);
+		assertEquals(42, model.getSize());
+		assertEquals(100, model.getItemAt(0));
+		assertEquals(4, model.getItemAt(41));
+	}
+
+	@Test
+	public void prependMissingSkipsItemsAlreadyListed()
+	{
+		setItems(3, 2, 1);
+		events.clear();
+
+		model.prependMissing(new int[]{5, 2, 4});
+		model.prependMissing(new int[]{5, 1});
+
+		assertEquals(Collections.singletonList("+0..1"), events);
+		assertArrayEquals(new int[]{5, 4, 3, 2, 1}, model.toIntArray());
+		assertEquals(5, mirror.size());
+	}
+
+	@Test
+	public void unlockingOneItemFiresOneEvent()
+	{
+		setItems(range(0, 100));
+		events.clear();
+
+		int[] next = IntStream.range(0, 100).filter(i -> i != 42).toArray();
+		setItems(next);
+		assertEquals(Collections.singletonList("-42..42"), events);
+	}
+
+	@Test
+	public void narrowingAndWideningFireOneEventPerRun()
+	{
+		setItems(range(0, 100));
+		events.clear();
+
+		int[] narrowed = IntStream.range(0, 100).filter(i -> i < 10 || (i >= 40 && i < 60) || i >= 90).toArray();
+		setItems(narrowed);
+		assertEquals(Arrays.asList("-10..39", "-30..59"), events);
+
+		events.clear();
+		setItems(range(0, 100));
+		assertEquals(Arrays.asList("+10..39", "+60..89"), events);
+	}
+
+	@Test
+	public void reorderedItemsAreRemovedAndAddedBack()
+	{
+		setItems(1, 2, 3, 4, 5);
+		events.clear();
+
+		setItems(1, 4, 2, 3, 5);
+		assertEquals(Arrays.asList("-1..1", "-1..1", "+2..3"), events);
+	}
+
+	@Test
+	public void manyRunsAreAppliedAsOneReplacement()
+	{
+		setItems(range(0, 100));
+		events.clear();
+
+		// every other item: 50 runs of one removal each
+		setItems(IntStream.range(0, 100).filter(i -> i % 2 == 0).toArray());
+		assertEquals(Arrays.asList("-0..99", "+0..49"), events);
+	}
+
+	@Test
+	public void sixteenRunsAreStillDiffed()
+	{
+		setItems(range(0, 100));
+		events.clear();
+
+		// multiples of 6 below 96: 0, 6, ..., 90
+		setItems(IntStream.range(0, 100).filter(i -> i % 6 != 0 || i >= 96).toArray());
+		assertEquals(16, events.size());
+	}
+
+	@Test
+	public void seventeenRunsAreReplaced()
+	{
+		setItems(range(0, 100));
+		events.clear();
+
+		// multiples of 5 below 85: 0, 5, ..., 80
+		setItems(IntStream.range(0, 100).filter(i -> i % 5 != 0 || i >= 85).toArray());
+		assertEquals(Arrays.asList("-0..99", "+0..82"), events);
+	}
+
+	@Test
+	public void emptyingAndRefilling()
+	{
+		setItems();
+		assertEquals(0, events.size());
+
+		setItems(range(0, 40));
+		setItems();
+		setItems(7);
+		assertEquals(Arrays.asList("+0..39", "-0..39", "+0..0"), events);
+	}
+
+	@Test
+	public void randomFilteringsKeepTheViewInStep()
+	{
+		Random random = new Random(11);
+		int[] all = range(0, 3_000);
+		for (int round = 0; round < 500; round++)
+		{
+			// usually a small change, sometimes an unrelated filtering
+			double keep = random.nextInt(4) == 0 ? random.nextDouble() : 0.98;
+			int[] next = Arrays.stream(all).filter(i -> random.nextDouble() < keep).toArray();
+			if (random.nextInt(10) == 0)
+			{
+				model.prependAll(new int[]{5_000 + round});
+				mirror.clear();
+				for (int i = 0; i < model.getSize(); i++)
+				{
+					mirror.add(model.getItemAt(i));
+				}
+			}
+			setItems(next);
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void readingPastTheEndThrows()
+	{
+		setItems(1, 2);
+		model.getItemAt(2);
+	}
+}
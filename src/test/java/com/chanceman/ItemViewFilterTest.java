@@ -0,0 +1,176 @@
+package com.chanceman;
+
+import com.chanceman.filters.Flatpacks;
+import com.chanceman.filters.ItemSets;
+import com.chanceman.filters.PoisonWeapons;
+import com.chanceman.managers.ItemIdSet;
+import com.chanceman.managers.ItemNameIndex;
+import com.chanceman.managers.ItemNameIndexes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Checks every combination of ownership, category, value range and search against a plain
+ * per-item evaluation of the same conditions.
+ */
+@RunWith(Parameterized.class)
+public class ItemViewFilterTest
+{
+	private static final String QUERY = "item 3";
+	private static final int MIN_VALUE = 1_000;
+	private static final int MAX_VALUE = 50_000;
+
+	private static final int[] IDS;
+	private static final String[] NAMES;
+	private static final int[] PRICES;
+	private static final ItemNameIndex INDEX;
+	private static final ItemIdSet UNLOCKED;
+	private static final ItemIdSet ROLLED;
+
+	static
+	{
+		// plain items plus a few of every category, so each category selects something
+		Set<Integer> universe = new TreeSet<>();
+		for (int i = 0; i < 2_000; i++)
+		{
+			universe.add(i);
+		}
+		for (ItemViewFilter.Category category : ItemViewFilter.Category.values())
+		{
+			categoryIds(category).stream().sorted().limit(50).forEach(universe::add);
+		}
+		IDS = universe.stream().mapToInt(Integer::intValue).toArray();
+
+		Random random = new Random(3);
+		NAMES = new String[IDS.length];
+		PRICES = new int[IDS.length];
+		List<Integer> unlocked = new ArrayList<>();
+		List<Integer> rolled = new ArrayList<>();
+		for (int i = 0; i < IDS.length; i++)
+		{
+			NAMES[i] = "item " + (IDS[i] % 37);
+			PRICES[i] = random.nextInt(100_000);
+			if (random.nextInt(2) == 0)
+			{
+				unlocked.add(IDS[i]);
+			}
+			if (random.nextInt(2) == 0)
+			{
+				rolled.add(IDS[i]);
+			}
+		}
+		INDEX = ItemNameIndexes.create(IDS, NAMES, PRICES);
+		UNLOCKED = ItemIdSet.of(unlocked.stream().mapToInt(Integer::intValue).toArray());
+		ROLLED = ItemIdSet.of(rolled.stream().mapToInt(Integer::intValue).toArray());
+	}
+
+	@Parameterized.Parameter(0)
+	public ItemViewFilter.Ownership ownership;
+	@Parameterized.Parameter(1)
+	public ItemViewFilter.Category category;
+	@Parameterized.Parameter(2)
+	public boolean valueRange;
+	@Parameterized.Parameter(3)
+	public boolean search;
+
+	@Parameterized.Parameters(name = "{0}, {1}, value range {2}, search {3}")
+	public static Collection<Object[]> combinations()
+	{
+		List<Object[]> combinations = new ArrayList<>();
+		for (ItemViewFilter.Ownership ownership : ItemViewFilter.Ownership.values())
+		{
+			for (ItemViewFilter.Category category : ItemViewFilter.Category.values())
+			{
+				for (boolean valueRange : new boolean[]{false, true})
+				{
+					for (boolean search : new boolean[]{false, true})
+					{
+						combinations.add(new Object[]{ownership, category, valueRange, search});
+					}
+				}
+			}
+		}
+		return combinations;
+	}
+
+	@Test
+	public void viewsMatchPerItemEvaluation()
+	{
+		ItemViewFilter filter = ItemViewFilter.NONE.withOwnership(ownership).withCategory(category);
+		if (valueRange)
+		{
+			filter = filter.withValueRange(MIN_VALUE, MAX_VALUE);
+		}
+		ItemIdSet found = search ? INDEX.search(QUERY, false) : null;
+
+		ItemIdSet unlockedView = filter.unlockedView(UNLOCKED, ROLLED, found, INDEX);
+		ItemIdSet rolledView = filter.rolledView(UNLOCKED, ROLLED, found, INDEX);
+
+		Set<Integer> inCategory = category == ItemViewFilter.Category.ALL ? null : new HashSet<>(categoryIds(category));
+		List<Integer> expectedUnlocked = new ArrayList<>();
+		List<Integer> expectedRolled = new ArrayList<>();
+		for (int i = 0; i < IDS.length; i++)
+		{
+			int itemId = IDS[i];
+			boolean shown = (!search || NAMES[i].contains(QUERY))
+				&& (!valueRange || (PRICES[i] >= MIN_VALUE && PRICES[i] <= MAX_VALUE))
+				&& (inCategory == null || inCategory.contains(itemId));
+			boolean isUnlocked = UNLOCKED.contains(itemId);
+			boolean isRolled = ROLLED.contains(itemId);
+			if (shown && isUnlocked && ownershipAllows(isRolled, ItemViewFilter.Ownership.UNLOCKED_NOT_ROLLED))
+			{
+				expectedUnlocked.add(itemId);
+			}
+			if (shown && isRolled && ownershipAllows(isUnlocked, ItemViewFilter.Ownership.ROLLED_NOT_UNLOCKED))
+			{
+				expectedRolled.add(itemId);
+			}
+		}
+
+		assertEquals(expectedUnlocked, new ArrayList<>(unlockedView));
+		assertEquals(expectedRolled, new ArrayList<>(rolledView));
+	}
+
+	/**
+	 * @param inOther whether the item is also in the other list's set
+	 * @param onlyThis the ownership setting that shows this list's items missing from the other set
+	 */
+	private boolean ownershipAllows(boolean inOther, ItemViewFilter.Ownership onlyThis)
+	{
+		switch (ownership)
+		{
+			case ALL:
+				return true;
+			case UNLOCKED_AND_ROLLED:
+				return inOther;
+			default:
+				return ownership == onlyThis && !inOther;
+		}
+	}
+
+	private static Collection<Integer> categoryIds(ItemViewFilter.Category category)
+	{
+		switch (category)
+		{
+			case ITEM_SETS:
+				return ItemSets.getAllItemSetIds();
+			case FLATPACKS:
+				return Flatpacks.getAllFlatpackIds();
+			case POISONABLE_WEAPONS:
+				Set<Integer> ids = new HashSet<>(PoisonWeapons.getAllBaseWeaponIds());
+				ids.addAll(PoisonWeapons.getVariantRequirements().keySet());
+				return ids;
+			default:
+				return new HashSet<>();
+		}
+	}
+}
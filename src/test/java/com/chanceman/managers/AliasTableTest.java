@@ -0,0 +1,101 @@
+package com.chanceman.managers;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class AliasTableTest
+{
+	private static final int DRAWS = 400_000;
+
+	@Test
+	public void drawsFollowTheWeights()
+	{
+		int[] items = {100, 101, 102, 103, 104};
+		double[] weights = {1, 2, 3, 4, 10};
+		AliasTable table = new AliasTable(items, weights, items.length);
+		assertEquals(20, table.getTotalWeight(), 0);
+
+		assertFrequencies(items, new double[]{0.05, 0.10, 0.15, 0.20, 0.50}, draw(table, new Random(1)));
+		assertFrequencies(items, new double[]{0.05, 0.10, 0.15, 0.20, 0.50}, draw(table, new SplittableRandom(1)));
+	}
+
+	@Test
+	public void zeroWeightItemsAreNeverDrawn()
+	{
+		int[] items = {1, 2, 3, 4};
+		AliasTable table = new AliasTable(items, new double[]{0, 5, 0, 5}, items.length);
+
+		assertFrequencies(items, new double[]{0, 0.5, 0, 0.5}, draw(table, new Random(2)));
+	}
+
+	@Test
+	public void allZeroWeightsDrawUniformly()
+	{
+		int[] items = {7, 8, 9};
+		AliasTable table = new AliasTable(items, new double[3], items.length);
+		assertEquals(0, table.getTotalWeight(), 0);
+
+		assertFrequencies(items, new double[]{1 / 3.0, 1 / 3.0, 1 / 3.0}, draw(table, new Random(3)));
+	}
+
+	@Test
+	public void onlyTheFirstNEntriesAreUsed()
+	{
+		int[] items = {1, 2, 3, 4};
+		AliasTable table = new AliasTable(items, new double[]{1, 3, 100, 100}, 2);
+		assertEquals(2, table.size());
+		assertEquals(4, table.getTotalWeight(), 0);
+
+		assertFrequencies(items, new double[]{0.25, 0.75, 0, 0}, draw(table, new Random(4)));
+	}
+
+	@Test
+	public void emptyTableDrawsNothing()
+	{
+		AliasTable table = new AliasTable(new int[0], new double[0], 0);
+
+		assertEquals(-1, table.sample(new Random(5)));
+		assertEquals(-1, table.sample(new SplittableRandom(5)));
+	}
+
+	private static int[] draw(AliasTable table, Random random)
+	{
+		int[] drawn = new int[DRAWS];
+		for (int i = 0; i < DRAWS; i++)
+		{
+			drawn[i] = table.sample(random);
+		}
+		return drawn;
+	}
+
+	private static int[] draw(AliasTable table, SplittableRandom random)
+	{
+		int[] drawn = new int[DRAWS];
+		for (int i = 0; i < DRAWS; i++)
+		{
+			drawn[i] = table.sample(random);
+		}
+		return drawn;
+	}
+
+	private static void assertFrequencies(int[] items, double[] expected, int[] drawn)
+	{
+		int[] counts = new int[items.length];
+		for (int item : drawn)
+		{
+			int i = 0;
+			while (items[i] != item)
+			{
+				i++;
+			}
+			counts[i]++;
+		}
+		for (int i = 0; i < items.length; i++)
+		{
+			// well over five standard deviations at this many draws
+			assertEquals("frequency of item " + items[i], expected[i], counts[i] / (double) DRAWS, 0.005);
+		}
+	}
+}
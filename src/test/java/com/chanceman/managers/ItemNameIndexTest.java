@@ -0,0 +1,177 @@
+package com.chanceman.managers;
+
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ItemNameIndexTest
+{
+	private static final String[] NAMES = {
+		"Dragon scimitar",
+		"Rune scimitar",
+		"Dragon dagger",
+		"Abcd xcde",
+		"Aaaaaa",
+		null,
+		"Bronze arrow",
+		"Rune scimiter",
+	};
+
+	private static ItemNameIndex index()
+	{
+		int[] ids = new int[NAMES.length];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ids[i] = 10 + i * 3;
+		}
+		return new ItemNameIndex(ItemIdSet.of(ids), ids, NAMES, new int[ids.length]);
+	}
+
+	private static int[] search(String query, boolean typoTolerant)
+	{
+		return index().search(query, typoTolerant).toIntArray();
+	}
+
+	@Test
+	public void findsSubstringsThroughTrigramPostings()
+	{
+		assertArrayEquals(new int[]{10, 13}, search("scimitar", false));
+		assertArrayEquals(new int[]{10, 16}, search("dragon ", false));
+		assertArrayEquals(new int[]{13, 31}, search("rune scim", false));
+		assertArrayEquals(new int[]{13}, search("rune scimitar", false));
+	}
+
+	@Test
+	public void shortQueriesScanEveryName()
+	{
+		assertArrayEquals(new int[]{10, 16, 19}, search("d", false));
+		assertArrayEquals(new int[]{28}, search("ow", false));
+	}
+
+	@Test
+	public void trigramsInTheWrongPlaceAreRejected()
+	{
+		// "abcd xcde" has every trigram of "abcde" (abc, bcd, cde), but not the query itself
+		assertArrayEquals(new int[0], search("abcde", false));
+	}
+
+	@Test
+	public void repeatedTrigramsArePostedOnce()
+	{
+		assertArrayEquals(new int[]{22}, search("aaaa", false));
+		assertArrayEquals(new int[0], search("aaaaaaa", false));
+	}
+
+	@Test
+	public void missingTrigramFindsNothing()
+	{
+		assertArrayEquals(new int[0], search("zzz", false));
+	}
+
+	@Test
+	public void typoToleranceOnlyAppliesWhenNothingMatches()
+	{
+		assertArrayEquals(new int[0], search("dragon scimtar", false));
+		assertArrayEquals(new int[]{10}, search("dragon scimtar", true));
+		assertArrayEquals(new int[]{13, 31}, search("rune scimtar", true));
+		// an exact match hides the near misses, here "rune scimiter"
+		assertArrayEquals(new int[]{13}, search("rune scimitar", true));
+	}
+
+	@Test
+	public void shortQueriesAllowNoTypos()
+	{
+		assertEquals(0, ItemNameIndex.maxTypos(5));
+		assertEquals(1, ItemNameIndex.maxTypos(6));
+		assertEquals(1, ItemNameIndex.maxTypos(11));
+		assertEquals(2, ItemNameIndex.maxTypos(12));
+		assertArrayEquals(new int[0], search("runx", true));
+	}
+
+	@Test
+	public void withinDistanceCountsSubstitutionsInsertionsAndDeletions()
+	{
+		assertTrue(ItemNameIndex.withinDistance("scimitar", "rune scimitar", 0));
+		assertTrue(ItemNameIndex.withinDistance("scimxtar", "rune scimitar", 1));
+		assertTrue(ItemNameIndex.withinDistance("scimitaar", "rune scimitar", 1));
+		assertTrue(ItemNameIndex.withinDistance("scimtar", "rune scimitar", 1));
+		assertFalse(ItemNameIndex.withinDistance("scimtar", "rune scimitar", 0));
+		assertFalse(ItemNameIndex.withinDistance("sxmxtar", "rune scimitar", 1));
+	}
+
+	@Test
+	public void transpositionCostsTwoEdits()
+	{
+		// swapped letters inside the match; at its edge a swap is one deletion away from matching
+		assertFalse(ItemNameIndex.withinDistance("abcdef", "xxabdcefxx", 1));
+		assertTrue(ItemNameIndex.withinDistance("abcdef", "xxabdcefxx", 2));
+		assertTrue(ItemNameIndex.withinDistance("abcdef", "xxbacdefxx", 1));
+	}
+
+	@Test
+	public void cutoffKeepsMatchesLateInTheText()
+	{
+		// every early column is over the limit, so the cutoff shrinks to nothing before the match starts
+		assertTrue(ItemNameIndex.withinDistance("abcdef", "zzzzzzzzzzzzabxdefzz", 1));
+		assertTrue(ItemNameIndex.withinDistance("abcdef", "zzzzzzzzzzzzabcdef", 0));
+		assertFalse(ItemNameIndex.withinDistance("abcdef", "zzzzzzzzzzzzabxdxfzz", 1));
+		// a pattern no longer than the limit matches anything
+		assertTrue(ItemNameIndex.withinDistance("ab", "", 2));
+		assertFalse(ItemNameIndex.withinDistance("abc", "", 2));
+	}
+
+	@Test
+	public void cutoffAgreesWithTheFullTable()
+	{
+		Random random = new Random(7);
+		for (int i = 0; i < 20_000; i++)
+		{
+			String pattern = randomString(random, 1 + random.nextInt(8));
+			String text = randomString(random, random.nextInt(16));
+			int maxDistance = random.nextInt(4);
+			assertEquals(pattern + " in " + text + " within " + maxDistance,
+				fullTableDistance(pattern, text) <= maxDistance,
+				ItemNameIndex.withinDistance(pattern, text, maxDistance));
+		}
+	}
+
+	private static String randomString(Random random, int length)
+	{
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+		{
+			chars[i] = (char) ('a' + random.nextInt(3));
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * @return the fewest edits between the pattern and any substring of the text, computing every cell
+	 */
+	private static int fullTableDistance(String pattern, String text)
+	{
+		int m = pattern.length();
+		int[] column = new int[m + 1];
+		for (int i = 0; i <= m; i++)
+		{
+			column[i] = i;
+		}
+		int best = column[m];
+		for (int j = 0; j < text.length(); j++)
+		{
+			int diagonal = column[0];
+			for (int i = 1; i <= m; i++)
+			{
+				int above = column[i];
+				int cost = pattern.charAt(i - 1) == text.charAt(j) ? 0 : 1;
+				column[i] = Math.min(Math.min(above + 1, column[i - 1] + 1), diagonal + cost);
+				diagonal = above;
+			}
+			best = Math.min(best, column[m]);
+		}
+		return best;
+	}
+}
@@ -0,0 +1,19 @@
+package com.chanceman.managers;
+
+/**
+ * Builds {@link ItemNameIndex}es for tests outside this package.
+ */
+public final class ItemNameIndexes
+{
+	private ItemNameIndexes()
+	{
+	}
+
+	/**
+	 * @param ids the items in ascending order
+	 */
+	public static ItemNameIndex create(int[] ids, String[] names, int[] prices)
+	{
+		return new ItemNameIndex(ItemIdSet.of(ids), ids, names, prices);
+	}
+}
@@ -0,0 +1,159 @@
+package com.chanceman.managers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ItemStateStoreTest
+{
+	@Test
+	public void addKeepsInsertionOrderAndRejectsDuplicates()
+	{
+		ItemStateStore store = new ItemStateStore();
+		assertTrue(store.add(4151));
+		assertTrue(store.add(2));
+		assertFalse(store.add(4151));
+		assertFalse(store.add(-1));
+		assertTrue(store.add(100_000));
+
+		assertEquals(3, store.size());
+		assertTrue(store.contains(4151));
+		assertTrue(store.contains(100_000));
+		assertFalse(store.contains(3));
+		assertFalse(store.contains(-1));
+		assertFalse(store.contains(1_000_000));
+		assertArrayEquals(new int[]{4151, 2, 100_000}, store.snapshot().toIntArray());
+	}
+
+	@Test
+	public void addAllSkipsDuplicatesAndNegativeIds()
+	{
+		ItemStateStore store = new ItemStateStore();
+		store.add(7);
+		store.addAll(new int[]{5, 7, -3, 5, 900, 1});
+
+		assertArrayEquals(new int[]{7, 5, 900, 1}, store.snapshot().toIntArray());
+		assertEquals(Arrays.asList(7, 5, 900, 1), new ArrayList<>(store.snapshot()));
+	}
+
+	@Test
+	public void snapshotsDoNotSeeLaterChanges()
+	{
+		ItemStateStore store = new ItemStateStore();
+		for (int i = 0; i < 16; i++)
+		{
+			store.add(i);
+		}
+		ItemStateStore.Snapshot before = store.snapshot();
+		// the next add fills the shared order array past the old snapshot's size
+		store.add(16);
+		store.add(17);
+		store.clear();
+		store.add(99);
+
+		assertEquals(16, before.size());
+		assertFalse(before.contains(16));
+		assertFalse(before.contains(99));
+		assertEquals(15, before.get(15));
+		assertEquals(1, store.size());
+		assertArrayEquals(new int[]{99}, store.snapshot().toIntArray());
+	}
+
+	@Test
+	public void removeAllKeepsTheRestInOrder()
+	{
+		ItemStateStore store = new ItemStateStore();
+		store.addAll(new int[]{5, 7, 900, 1});
+		ItemStateStore.Snapshot before = store.snapshot();
+
+		assertFalse(store.removeAll(new int[]{3, -1, 100_000}));
+		assertTrue(store.removeAll(new int[]{7, 1, 7}));
+		store.add(7);
+
+		assertArrayEquals(new int[]{5, 900, 7}, store.snapshot().toIntArray());
+		assertFalse(store.contains(1));
+		assertArrayEquals(new int[]{5, 7, 900, 1}, before.toIntArray());
+		assertTrue(before.contains(1));
+	}
+
+	@Test
+	public void snapshotActsAsASet()
+	{
+		ItemStateStore store = new ItemStateStore();
+		store.addAll(new int[]{3, 1, 2});
+		ItemStateStore.Snapshot snapshot = store.snapshot();
+
+		assertTrue(snapshot.contains((Object) 2));
+		assertFalse(snapshot.contains("2"));
+		assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), snapshot);
+		assertArrayEquals(new int[]{1, 2, 3}, snapshot.getItems().toIntArray());
+
+		Iterator<Integer> iterator = snapshot.iterator();
+		assertEquals(3, (int) iterator.next());
+		assertEquals(1, (int) iterator.next());
+		assertEquals(2, (int) iterator.next());
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void iteratingPastTheEndThrows()
+	{
+		ItemStateStore store = new ItemStateStore();
+		store.add(1);
+		Iterator<Integer> iterator = store.snapshot().iterator();
+		iterator.next();
+		iterator.next();
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void getOutsideTheSnapshotThrows()
+	{
+		ItemStateStore store = new ItemStateStore();
+		store.add(1);
+		store.snapshot().get(1);
+	}
+
+	@Test
+	public void readersNeverSeeAPartialAdd() throws InterruptedException
+	{
+		ItemStateStore store = new ItemStateStore();
+		CountDownLatch done = new CountDownLatch(1);
+		AtomicReference<String> failure = new AtomicReference<>();
+		Thread reader = new Thread(() ->
+		{
+			while (done.getCount() > 0)
+			{
+				ItemStateStore.Snapshot snapshot = store.snapshot();
+				// every ID in the order array must also be in the bitmap
+				for (int i = 0; i < snapshot.size(); i++)
+				{
+					if (!snapshot.contains(snapshot.get(i)))
+					{
+						failure.set("item " + snapshot.get(i) + " is ordered but not contained");
+						return;
+					}
+				}
+			}
+		});
+		reader.start();
+		for (int i = 0; i < 50_000; i++)
+		{
+			store.add(i * 7 % 50_000);
+		}
+		done.countDown();
+		reader.join();
+
+		assertNull(failure.get());
+		assertEquals(50_000, store.size());
+	}
+}
@@ -0,0 +1,204 @@
+package com.chanceman.managers;
+
+import com.chanceman.persistence.RollAuditLog;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class RollRandomTest
+{
+	private static final long SEED = 0x5eedL;
+	private static final int SOURCE = 995;
+
+	// items 0-199 are rollable, the even ones below 20 were unlocked before the log began
+	private static final ItemIdSet UNIVERSE = ItemIdSet.of(range(0, 200));
+	private static final int[] BASELINE = {0, 2, 4, 6, 8, 10, 12, 14, 16, 18};
+
+	private static int[] range(int from, int to)
+	{
+		int[] ids = new int[to - from];
+		for (int i = 0; i < ids.length; i++)
+		{
+			ids[i] = from + i;
+		}
+		return ids;
+	}
+
+	private static LockedItemIndex index()
+	{
+		LockedItemIndex index = new LockedItemIndex();
+		ItemIdSet baseline = ItemIdSet.of(BASELINE);
+		index.rebuild(UNIVERSE, baseline::contains);
+		return index;
+	}
+
+	/**
+	 * @return {@code count} rolls from the start of the stream, as the plugin logs them
+	 */
+	private static List<RollAuditLog.Entry> roll(LockedItemIndex index, int count)
+	{
+		List<RollAuditLog.Entry> entries = new ArrayList<>();
+		for (RollAuditLog.Entry entry : index.draw(SEED, 0, count))
+		{
+			entries.add(entry.withSource(SOURCE));
+		}
+		return entries;
+	}
+
+	private static ItemIdSet unlockedAfter(List<RollAuditLog.Entry> entries)
+	{
+		int[] unlocked = Arrays.copyOf(BASELINE, BASELINE.length + entries.size());
+		for (int i = 0; i < entries.size(); i++)
+		{
+			unlocked[BASELINE.length + i] = entries.get(i).result;
+		}
+		return ItemIdSet.of(unlocked);
+	}
+
+	private static boolean isResult(List<RollAuditLog.Entry> entries, int itemId)
+	{
+		return entries.stream().anyMatch(entry -> entry.result == itemId);
+	}
+
+	private static long baselineHash()
+	{
+		return RollRandom.setHash(ItemIdSet.of(BASELINE));
+	}
+
+	@Test
+	public void generatorDependsOnSeedAndPositionOnly()
+	{
+		assertEquals(RollRandom.at(SEED, 7).nextLong(), RollRandom.at(SEED, 7).nextLong());
+		assertNotEquals(RollRandom.at(SEED, 7).nextLong(), RollRandom.at(SEED, 8).nextLong());
+		assertNotEquals(RollRandom.at(SEED, 7).nextLong(), RollRandom.at(SEED + 1, 7).nextLong());
+	}
+
+	@Test
+	public void setHashIsOrderIndependentAndUpdatable()
+	{
+		long hash = RollRandom.setHash(Arrays.asList(3, 1, 2));
+		assertEquals(hash, RollRandom.setHash(Arrays.asList(1, 2, 3)));
+		assertEquals(RollRandom.setHash(Arrays.asList(1, 3)), hash - RollRandom.itemHash(2));
+		assertEquals(0, RollRandom.setHash(new ArrayList<>()));
+	}
+
+	@Test
+	public void uniformDrawsReplayExactly()
+	{
+		List<RollAuditLog.Entry> entries = roll(index(), 50);
+		assertEquals(50, entries.size());
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertTrue(verification.toString(), verification.isValid());
+		assertEquals(50, verification.verified);
+		assertEquals(0, verification.unverifiable);
+	}
+
+	@Test
+	public void drawsRunOutWithTheLockedItems()
+	{
+		List<RollAuditLog.Entry> entries = roll(index(), 500);
+		assertEquals(UNIVERSE.size() - BASELINE.length, entries.size());
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertTrue(verification.isValid());
+		assertEquals(entries.size(), verification.verified);
+	}
+
+	@Test
+	public void tamperedResultIsAMismatch()
+	{
+		List<RollAuditLog.Entry> entries = roll(index(), 20);
+		RollAuditLog.Entry honest = entries.get(12);
+		// another item that was still locked at that roll
+		int other = 199;
+		while (isResult(entries.subList(0, 13), other))
+		{
+			other--;
+		}
+		entries.set(12, new RollAuditLog.Entry(honest.position, honest.candidateHash, honest.candidateCount,
+			other, honest.flags, honest.source));
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertFalse(verification.isValid());
+		assertEquals(12, verification.firstMismatch);
+		assertEquals(12, verification.verified);
+	}
+
+	@Test
+	public void resultThatWasAlreadyUnlockedIsAMismatch()
+	{
+		List<RollAuditLog.Entry> entries = roll(index(), 10);
+		RollAuditLog.Entry honest = entries.get(5);
+		entries.set(5, new RollAuditLog.Entry(honest.position, honest.candidateHash, honest.candidateCount,
+			entries.get(2).result, honest.flags, honest.source));
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertEquals(5, verification.firstMismatch);
+	}
+
+	@Test
+	public void positionGapIsAMismatch()
+	{
+		List<RollAuditLog.Entry> entries = roll(index(), 10);
+		entries.remove(4);
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertEquals(4, verification.firstMismatch);
+		assertEquals(4, verification.verified);
+	}
+
+	@Test
+	public void unloggedUnlockBreaksTheBaseline()
+	{
+		List<RollAuditLog.Entry> entries = roll(index(), 10);
+		int[] unlocked = Arrays.copyOf(unlockedAfter(entries).toIntArray(), BASELINE.length + entries.size() + 1);
+		unlocked[unlocked.length - 1] = 150;
+		assertFalse(isResult(entries, 150));
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, ItemIdSet.of(unlocked));
+		assertFalse(verification.baselineMatches);
+		assertFalse(verification.isValid());
+	}
+
+	@Test
+	public void weightedDrawsAreOnlyCheckedToHaveBeenLocked()
+	{
+		LockedItemIndex index = index();
+		index.setWeigher(itemId -> 1 + itemId % 7);
+		List<RollAuditLog.Entry> entries = roll(index, 30);
+		assertTrue(entries.stream().allMatch(RollAuditLog.Entry::isWeighted));
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertTrue(verification.isValid());
+		assertEquals(0, verification.verified);
+		assertEquals(30, verification.unverifiable);
+	}
+
+	@Test
+	public void changedCandidatesAreUnverifiable()
+	{
+		// rolled while items 100-109 were filtered out, so the logged candidate sets differ from the replay
+		LockedItemIndex index = new LockedItemIndex();
+		ItemIdSet baseline = ItemIdSet.of(BASELINE);
+		index.rebuild(UNIVERSE, itemId -> baseline.contains(itemId) || (itemId >= 100 && itemId < 110));
+		List<RollAuditLog.Entry> entries = roll(index, 15);
+
+		RollRandom.Verification verification = RollRandom.replay(SEED, baselineHash(), entries,
+			UNIVERSE, unlockedAfter(entries));
+		assertTrue(verification.isValid());
+		assertEquals(15, verification.unverifiable);
+	}
+}
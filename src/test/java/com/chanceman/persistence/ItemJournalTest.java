@@ -0,0 +1,137 @@
+package com.chanceman.persistence;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ItemJournalTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	@Before
+	public void setUp()
+	{
+		file = folder.getRoot().toPath().resolve("items.journal");
+	}
+
+	private List<Integer> replay() throws IOException
+	{
+		List<Integer> replayed = new ArrayList<>();
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			journal.replay(replayed::add);
+		}
+		return replayed;
+	}
+
+	@Test
+	public void replaysAppendedBatchesInOrder() throws IOException
+	{
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			journal.appendAll(new int[]{4151, 0, 11802});
+			journal.appendAll(new int[0]);
+			journal.appendAll(new int[]{-1, Integer.MAX_VALUE});
+			assertEquals(5, journal.size());
+		}
+		assertEquals(Arrays.asList(4151, 0, 11802, -1, Integer.MAX_VALUE), replay());
+		assertEquals(5 * ItemJournal.RECORD_SIZE, Files.size(file));
+	}
+
+	@Test
+	public void missingFileReplaysNothing() throws IOException
+	{
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			assertEquals(0, journal.replay(id -> { throw new AssertionError(id); }));
+		}
+	}
+
+	@Test
+	public void checksumMismatchCutsOffTheRest() throws IOException
+	{
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			journal.appendAll(new int[]{1, 2, 3, 4});
+		}
+		// flip a bit of the third record's item ID
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+		{
+			raf.seek(2 * ItemJournal.RECORD_SIZE + 3);
+			raf.write(raf.read() ^ 1);
+		}
+
+		assertEquals(Arrays.asList(1, 2), replay());
+		assertEquals(2 * ItemJournal.RECORD_SIZE, Files.size(file));
+	}
+
+	@Test
+	public void tornTailIsTruncatedAndAppendingContinuesAfterIt() throws IOException
+	{
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			journal.appendAll(new int[]{10, 20, 30});
+		}
+		// a crash in the middle of the last record
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+		{
+			raf.setLength(3 * ItemJournal.RECORD_SIZE - 3);
+		}
+
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			List<Integer> replayed = new ArrayList<>();
+			assertEquals(2, journal.replay(replayed::add));
+			assertEquals(Arrays.asList(10, 20), replayed);
+			assertEquals(2 * ItemJournal.RECORD_SIZE, Files.size(file));
+
+			journal.appendAll(new int[]{40});
+			assertEquals(3, journal.size());
+		}
+		assertEquals(Arrays.asList(10, 20, 40), replay());
+	}
+
+	@Test
+	public void replayRewindsAnOpenAppendChannelPastTheCut() throws IOException
+	{
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			journal.appendAll(new int[]{10, 20, 30});
+			// the tail is torn while the append channel is still positioned at the old end
+			try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+			{
+				raf.setLength(3 * ItemJournal.RECORD_SIZE - 3);
+			}
+			assertEquals(2, journal.replay(id -> { }));
+
+			journal.appendAll(new int[]{40});
+			assertEquals(3 * ItemJournal.RECORD_SIZE, Files.size(file));
+		}
+		assertEquals(Arrays.asList(10, 20, 40), replay());
+	}
+
+	@Test
+	public void resetEmptiesTheJournal() throws IOException
+	{
+		try (ItemJournal journal = new ItemJournal(file))
+		{
+			journal.appendAll(new int[]{1, 2});
+			journal.reset();
+			assertEquals(0, journal.size());
+			journal.appendAll(new int[]{3});
+		}
+		assertEquals(Arrays.asList(3), replay());
+	}
+}
@@ -0,0 +1,124 @@
+package com.chanceman.persistence;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ItemSnapshotFileTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path file;
+
+	@Before
+	public void setUp()
+	{
+		file = folder.getRoot().toPath().resolve("items.dat");
+	}
+
+	@Test
+	public void roundTripKeepsOrderAndBitmap() throws IOException
+	{
+		int[] order = {4151, 0, 63, 64, 30_000, 2};
+		ItemSnapshotFile.write(file, order);
+
+		ItemSnapshotFile.Contents contents = ItemSnapshotFile.read(file);
+		assertArrayEquals(order, contents.order);
+		assertEquals(30_000 / 64 + 1, contents.bits.length);
+		for (int itemId : order)
+		{
+			assertEquals(1L << itemId, contents.bits[itemId >> 6] & (1L << itemId));
+		}
+		assertEquals(order.length, Arrays.stream(contents.bits).map(Long::bitCount).sum());
+	}
+
+	@Test
+	public void emptySetRoundTrips() throws IOException
+	{
+		ItemSnapshotFile.write(file, new int[0]);
+
+		ItemSnapshotFile.Contents contents = ItemSnapshotFile.read(file);
+		assertArrayEquals(new int[0], contents.order);
+		assertArrayEquals(new long[0], contents.bits);
+	}
+
+	@Test
+	public void writeReplacesTheOldSnapshot() throws IOException
+	{
+		ItemSnapshotFile.write(file, new int[]{1, 2, 3, 4, 5, 6, 7, 8});
+		ItemSnapshotFile.write(file, new int[]{9});
+
+		assertArrayEquals(new int[]{9}, ItemSnapshotFile.read(file).order);
+	}
+
+	@Test
+	public void flippedBitFailsTheChecksum() throws IOException
+	{
+		ItemSnapshotFile.write(file, new int[]{10, 20, 30});
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+		{
+			raf.seek(raf.length() - 8);
+			raf.write(raf.read() ^ 0x10);
+		}
+		assertUnreadable("checksum");
+	}
+
+	@Test
+	public void truncatedFileIsRejected() throws IOException
+	{
+		ItemSnapshotFile.write(file, new int[]{10, 20, 30});
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+		{
+			raf.setLength(raf.length() - 4);
+		}
+		assertUnreadable("truncated");
+	}
+
+	@Test
+	public void otherFilesAreRejected() throws IOException
+	{
+		Files.write(file, new byte[]{'[', '1', ',', '2', ']', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+		assertUnreadable("magic");
+
+		Files.write(file, new byte[3]);
+		assertUnreadable("size");
+	}
+
+	@Test
+	public void unknownVersionIsRejected() throws IOException
+	{
+		ItemSnapshotFile.write(file, new int[]{1});
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+		{
+			raf.seek(4);
+			raf.writeInt(99);
+		}
+		assertUnreadable("version");
+	}
+
+	private void assertUnreadable(String reason)
+	{
+		try
+		{
+			ItemSnapshotFile.read(file);
+			fail("read a damaged snapshot");
+		}
+		catch (IOException e)
+		{
+			if (!e.getMessage().contains(reason))
+			{
+				throw new AssertionError("expected a " + reason + " error, got: " + e.getMessage(), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.chanceman.persistence;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournaledItemStoreTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Gson gson = new Gson();
+	private final JournaledItemStore store = new JournaledItemStore();
+	private Path file;
+	private Path dat;
+
+	@Before
+	public void setUp()
+	{
+		file = folder.getRoot().toPath().resolve("unlocked.json");
+		dat = file.resolveSibling("unlocked.dat");
+	}
+
+	@After
+	public void tearDown()
+	{
+		store.close();
+	}
+
+	private int[] reload() throws IOException
+	{
+		store.close();
+		return new JournaledItemStore().load(file, gson);
+	}
+
+	@Test
+	public void journaledItemsSurviveAReload() throws IOException
+	{
+		store.writeSnapshot(file, new int[]{1, 2}, gson);
+		store.appendAll(file, new int[]{3, 2, 4}, () -> null, gson);
+
+		assertArrayEquals(new int[]{1, 2, 3, 4}, reload());
+	}
+
+	@Test
+	public void legacyJsonIsMigrated() throws IOException
+	{
+		Files.write(file, "[5, 3, null, 5, 9]".getBytes());
+
+		assertArrayEquals(new int[]{5, 3, 9}, store.load(file, gson));
+		assertTrue(Files.exists(dat));
+		assertArrayEquals(new int[]{5, 3, 9}, ItemSnapshotFile.read(dat).order);
+	}
+
+	@Test
+	public void corruptSnapshotIsRestoredFromBackups() throws IOException
+	{
+		store.writeSnapshot(file, new int[]{1, 2, 3}, gson);
+		store.appendAll(file, new int[]{4}, () -> null, gson);
+		Files.write(file, "not json".getBytes());
+		Files.write(dat, new byte[]{1, 2, 3});
+
+		// the journal is replayed on top of the restored backup
+		assertArrayEquals(new int[]{1, 2, 3, 4}, reload());
+		assertTrue(Files.exists(dat.resolveSibling("unlocked.dat.corrupt")));
+		assertArrayEquals(new int[]{1, 2, 3, 4}, ItemSnapshotFile.read(dat).order);
+	}
+
+	@Test
+	public void corruptSnapshotWithoutBackupsFallsBackToTheJsonExport() throws IOException
+	{
+		Files.write(file, "[7, 8]".getBytes());
+		Files.write(dat, new byte[]{1, 2, 3});
+
+		assertArrayEquals(new int[]{7, 8}, store.load(file, gson));
+		assertTrue(Files.exists(dat.resolveSibling("unlocked.dat.corrupt")));
+	}
+
+	@Test
+	public void nothingReadableStartsFromTheJournalAlone() throws IOException
+	{
+		store.appendAll(file, new int[]{6}, () -> null, gson);
+		Files.write(file, "{broken".getBytes());
+		Files.write(dat, new byte[]{1, 2, 3});
+
+		assertArrayEquals(new int[]{6}, reload());
+		assertTrue(Files.exists(dat.resolveSibling("unlocked.dat.corrupt")));
+	}
+}